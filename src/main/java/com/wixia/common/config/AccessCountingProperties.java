@@ -0,0 +1,36 @@
+package com.wixia.common.config;
+
+import java.util.Properties;
+
+/**
+ * {@link Properties} that records every successful key lookup in a {@link KeyAccessStatistics}.
+ * cfg4j reads bound values with {@link #get(Object)}, other callers typically use {@link #getProperty(String)}.
+ */
+class AccessCountingProperties extends Properties {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient KeyAccessStatistics statistics;
+
+    AccessCountingProperties(KeyAccessStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = super.get(key);
+        if (value != null) {
+            statistics.record((String) key);
+        }
+        return value;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        Object value = super.get(key);
+        if (value != null) {
+            statistics.record(key);
+        }
+        return value instanceof String ? (String) value : null;
+    }
+}
@@ -0,0 +1,137 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the loads of a single source on a separate daemon thread, so that the caller of {@code init()} or
+ * {@code reload()} waits at most for the deadline. A load that misses the deadline is cancelled by
+ * interrupting its thread. Lightbend Config does not check for interrupts everywhere, so a load blocked on
+ * I/O can keep running. Loads are not piled up behind it: the next load waits, within its own deadline, for
+ * a cancelled load to stop before it starts, and a load that is still running is shared by concurrent
+ * callers. A shared load is only cancelled when the last of its callers gives up, so a caller that times out
+ * does not cut short the callers that joined later and are still within their deadline. The load runs with
+ * the caller's context class loader, and is only shared by callers with the same one.
+ */
+class BoundedLoader {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "lightbend-config-load");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration timeout;
+    private Attempt inFlight;
+
+    BoundedLoader(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param load loads, parses and resolves the configuration
+     * @return the result of {@code load}
+     * @throws ConfigLoadTimeoutException if {@code load} did not finish in time
+     */
+    Config load(Supplier<Config> load) {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        Attempt attempt = null;
+        try {
+            attempt = join(load, Thread.currentThread().getContextClassLoader(), deadline);
+            return attempt.future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            throw new ConfigLoadTimeoutException(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the configuration", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (attempt != null) {
+                leave(attempt);
+            }
+        }
+    }
+
+    /**
+     * @return a new or still running load, with the caller counted as one of its waiters
+     * @throws TimeoutException if a cancelled load did not stop before the deadline
+     */
+    private Attempt join(Supplier<Config> load, ClassLoader contextClassLoader, long deadline)
+            throws InterruptedException, TimeoutException {
+        while (true) {
+            final Attempt previous;
+            synchronized (this) {
+                previous = inFlight;
+                if (previous != null && !previous.future.isDone()
+                        && previous.contextClassLoader == contextClassLoader) {
+                    previous.waiters++;
+                    return previous;
+                }
+                if (previous == null || previous.stopped()) {
+                    final Attempt attempt = new Attempt(contextClassLoader);
+                    attempt.future = EXECUTOR.submit(() -> {
+                        attempt.started = true;
+                        final Thread thread = Thread.currentThread();
+                        final ClassLoader pooled = thread.getContextClassLoader();
+                        thread.setContextClassLoader(contextClassLoader);
+                        try {
+                            return load.get();
+                        } finally {
+                            thread.setContextClassLoader(pooled);
+                            attempt.finished.countDown();
+                        }
+                    });
+                    attempt.waiters = 1;
+                    inFlight = attempt;
+                    return attempt;
+                }
+            }
+            if (!previous.finished.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw new TimeoutException();
+            }
+        }
+    }
+
+    /**
+     * Stop waiting for {@code attempt}, and cancel it if nobody else waits for it either.
+     */
+    private synchronized void leave(Attempt attempt) {
+        if (--attempt.waiters == 0 && !attempt.future.isDone()) {
+            attempt.future.cancel(true);
+        }
+    }
+
+    private static class Attempt {
+        final ClassLoader contextClassLoader;
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile boolean started;
+        volatile Future<Config> future;
+        // Guarded by the loader
+        int waiters;
+
+        Attempt(ClassLoader contextClassLoader) {
+            this.contextClassLoader = contextClassLoader;
+        }
+
+        boolean stopped() {
+            return !started || finished.getCount() == 0;
+        }
+    }
+}
@@ -12,4 +12,11 @@ public interface ConfigFactoryHandler {
 
     Config reload();
 
+    /**
+     * @return an identifier of the input of the next {@link #reload()}, or null if it can not be identified
+     */
+    default String fingerprint() {
+        return null;
+    }
+
 }
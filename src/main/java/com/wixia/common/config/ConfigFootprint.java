@@ -0,0 +1,208 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigList;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigValue;
+import com.typesafe.config.ConfigValueType;
+
+import java.util.Map;
+
+/**
+ * An estimate of the heap retained by a configuration: the Lightbend {@link Config} tree, and the flattened
+ * entries that {@link LightbendConfigurationSource} keeps next to it in each {@link ConfigSnapshot}.
+ * <p>
+ * The estimate assumes a 64-bit JVM with compressed references, and counts the objects that make up the tree
+ * and the entries, not the origins, which are mostly shared. Strings take one byte per character if they only
+ * hold Latin-1 characters and the JVM stores such strings compactly, as Java 9 and later do by default, and
+ * two bytes per character otherwise. String values and keys that the flattened entries share with the tree
+ * are counted once, in the tree. It is meant as an early signal for configurations that grow by orders of
+ * magnitude, not as an exact measurement.
+ */
+public final class ConfigFootprint {
+
+    private static final long OBJECT_HEADER = 16;
+    private static final long REFERENCE = 4;
+    private static final long ARRAY_HEADER = 16;
+    private static final long STRING = 24 + ARRAY_HEADER;
+    private static final long BOXED = 16;
+    private static final long HASH_MAP = 48;
+    private static final long HASH_MAP_ENTRY = 32;
+    private static final long ARRAY_LIST = 24 + ARRAY_HEADER;
+
+    // Java 8 strings have a char array, later versions a byte array and a coder that tells its encoding
+    static final boolean COMPACT_STRINGS = hasCoder();
+
+    private final long configTreeBytes;
+    private final long flattenedBytes;
+    private final int valueCount;
+
+    ConfigFootprint(long configTreeBytes, long flattenedBytes, int valueCount) {
+        this.configTreeBytes = configTreeBytes;
+        this.flattenedBytes = flattenedBytes;
+        this.valueCount = valueCount;
+    }
+
+    /**
+     * Estimate the footprint of a resolved configuration and its flattened entries.
+     *
+     * @param config the resolved configuration
+     * @return the estimate
+     */
+    static ConfigFootprint of(Config config) {
+        final Walk walk = new Walk();
+        walk.configTreeBytes = HASH_MAP;
+        walk.flattenedBytes = HASH_MAP;
+        walk.object(config.root(), 0, true);
+        return new ConfigFootprint(walk.configTreeBytes, walk.flattenedBytes, walk.valueCount);
+    }
+
+    /**
+     * @return the estimated size of the Lightbend {@link Config} tree in bytes
+     */
+    public long getConfigTreeBytes() {
+        return configTreeBytes;
+    }
+
+    /**
+     * @return the estimated size of the flattened entries of the snapshot in bytes
+     */
+    public long getFlattenedBytes() {
+        return flattenedBytes;
+    }
+
+    /**
+     * @return the estimated size of the tree and the flattened entries together in bytes
+     */
+    public long getTotalBytes() {
+        return configTreeBytes + flattenedBytes;
+    }
+
+    /**
+     * @return the number of values, including objects and lists, in the tree
+     */
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s {configTreeBytes=%d, flattenedBytes=%d, valueCount=%d}",
+                this.getClass().getName(), configTreeBytes, flattenedBytes, valueCount);
+    }
+
+    private static boolean hasCoder() {
+        try {
+            String.class.getDeclaredField("coder");
+            return true;
+        } catch (NoSuchFieldException e) {
+            return false;
+        }
+    }
+
+    private static long string(String value) {
+        return string(value.length(), isLatin1(value));
+    }
+
+    private static long string(int length, boolean latin1) {
+        return align(STRING + (COMPACT_STRINGS && latin1 ? length : 2L * length));
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xff) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static class Walk {
+        long configTreeBytes;
+        long flattenedBytes;
+        int valueCount;
+
+        /**
+         * @param pathLength the length of the path of {@code object}, 0 for the root
+         * @param pathLatin1 whether the path of {@code object} only has Latin-1 characters
+         */
+        void object(ConfigObject object, int pathLength, boolean pathLatin1) {
+            configTreeBytes += OBJECT_HEADER + 3 * REFERENCE + HASH_MAP;
+            for (Map.Entry<String, ConfigValue> entry : object.entrySet()) {
+                final String key = entry.getKey();
+                configTreeBytes += HASH_MAP_ENTRY + 2 * REFERENCE + string(key);
+                value(entry.getValue(), pathLength == 0 ? key.length() : pathLength + 1 + key.length(),
+                        pathLatin1 && isLatin1(key));
+            }
+        }
+
+        void value(ConfigValue value, int pathLength, boolean pathLatin1) {
+            valueCount++;
+            switch (value.valueType()) {
+                case OBJECT:
+                    object((ConfigObject) value, pathLength, pathLatin1);
+                    return;
+                case LIST:
+                    configTreeBytes += OBJECT_HEADER + 2 * REFERENCE + ARRAY_LIST;
+                    for (ConfigValue element : (ConfigList) value) {
+                        configTreeBytes += REFERENCE;
+                        leafInTree(element);
+                    }
+                    break;
+                default:
+                    leafInTree(value);
+            }
+            // The path is a new string, the unwrapped value holds the same strings as the tree
+            flattenedBytes += HASH_MAP_ENTRY + 2 * REFERENCE + string(pathLength, pathLatin1)
+                    + unwrapped(value.unwrapped(), false);
+        }
+
+        /**
+         * Values inside lists are not flattened, they only count towards the tree.
+         */
+        private void leafInTree(ConfigValue value) {
+            if (value.valueType() == ConfigValueType.OBJECT
+                    || value.valueType() == ConfigValueType.LIST) {
+                final Walk nested = new Walk();
+                nested.value(value, 0, true);
+                configTreeBytes += nested.configTreeBytes;
+                valueCount += nested.valueCount;
+                return;
+            }
+            configTreeBytes += OBJECT_HEADER + 2 * REFERENCE + unwrapped(value.unwrapped(), true);
+        }
+
+        /**
+         * @param countStrings false if the strings in {@code value} are counted elsewhere
+         */
+        private static long unwrapped(Object value, boolean countStrings) {
+            if (value == null || value instanceof Boolean) {
+                return 0;
+            } else if (value instanceof String) {
+                return countStrings ? string((String) value) : 0;
+            } else if (value instanceof Integer) {
+                return BOXED;
+            } else if (value instanceof Number) {
+                return BOXED + 8;
+            } else if (value instanceof Iterable) {
+                long bytes = ARRAY_LIST;
+                for (Object element : (Iterable<?>) value) {
+                    bytes += REFERENCE + unwrapped(element, countStrings);
+                }
+                return bytes;
+            } else if (value instanceof Map) {
+                long bytes = HASH_MAP;
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    bytes += HASH_MAP_ENTRY + unwrapped(entry.getKey(), countStrings)
+                            + unwrapped(entry.getValue(), countStrings);
+                }
+                return bytes;
+            }
+            return OBJECT_HEADER;
+        }
+    }
+}
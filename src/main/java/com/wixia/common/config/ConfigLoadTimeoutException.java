@@ -0,0 +1,31 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigOriginFactory;
+
+import java.time.Duration;
+
+/**
+ * Thrown, or reported to {@link ConfigSnapshotListener#onRejected(Throwable)}, when loading, parsing and
+ * resolving a configuration takes longer than the deadline set with
+ * {@link LightbendConfigurationSourceBuilder#withLoadTimeout(Duration)}.
+ */
+public class ConfigLoadTimeoutException extends ConfigException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration timeout;
+
+    ConfigLoadTimeoutException(Duration timeout) {
+        super(ConfigOriginFactory.newSimple("load deadline"),
+                String.format("Loading the configuration took longer than %d ms and was cancelled", timeout.toMillis()));
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return the deadline that was exceeded
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
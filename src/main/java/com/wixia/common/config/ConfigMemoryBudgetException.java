@@ -0,0 +1,39 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigOriginFactory;
+
+/**
+ * Thrown, or reported to {@link ConfigSnapshotListener#onRejected(Throwable)}, when the estimated footprint of
+ * a loaded configuration exceeds the budget set with
+ * {@link LightbendConfigurationSourceBuilder#withMemoryBudget(long)}.
+ */
+public class ConfigMemoryBudgetException extends ConfigException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ConfigFootprint footprint;
+    private final long budgetBytes;
+
+    ConfigMemoryBudgetException(ConfigFootprint footprint, long budgetBytes) {
+        super(ConfigOriginFactory.newSimple("memory budget"),
+                String.format("The configuration needs an estimated %d bytes, more than the budget of %d bytes",
+                        footprint.getTotalBytes(), budgetBytes));
+        this.footprint = footprint;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return the estimated footprint of the rejected configuration
+     */
+    public ConfigFootprint getFootprint() {
+        return footprint;
+    }
+
+    /**
+     * @return the budget that was exceeded, in bytes
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+}
@@ -0,0 +1,62 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigParseOptions;
+
+import java.util.Properties;
+
+/**
+ * A snapshot of the overrides that {@link ConfigFactory#load()} puts on top of the application configuration:
+ * the system properties and, when {@code config.override_with_env_vars} is true, the
+ * {@code CONFIG_FORCE_} environment variables.
+ * <p>
+ * The overlays are parsed once, on first use, and reused by every load until {@link #refresh()} is called.
+ * Unlike Lightbend Config's own cache they are not dropped when some other code calls
+ * {@link ConfigFactory#invalidateCaches()}. One instance can be shared by any number of sources.
+ */
+public class ConfigOverlays {
+
+    private volatile Config overlays;
+
+    /**
+     * @return the overlays, parsed on first use or after {@link #refresh()}
+     */
+    public Config get() {
+        Config current = overlays;
+        if (current == null) {
+            synchronized (this) {
+                current = overlays;
+                if (current == null) {
+                    current = parse();
+                    overlays = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Parse the system properties and environment variables again on the next use, for example after
+     * changing a system property that the configuration refers to.
+     */
+    public void refresh() {
+        overlays = null;
+    }
+
+    private static Config parse() {
+        final Properties systemProperties = new Properties();
+        final Properties current = System.getProperties();
+        synchronized (current) {
+            systemProperties.putAll(current);
+        }
+
+        final Config parsed = ConfigFactory.parseProperties(systemProperties,
+                ConfigParseOptions.defaults().setOriginDescription("system properties"));
+
+        if (Boolean.parseBoolean(systemProperties.getProperty("config.override_with_env_vars"))) {
+            return ConfigFactory.systemEnvironmentOverrides().withFallback(parsed);
+        }
+        return parsed;
+    }
+}
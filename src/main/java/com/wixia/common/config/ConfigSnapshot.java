@@ -0,0 +1,113 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An immutable, resolved configuration published by a {@link LightbendConfigurationSource}.
+ * <p>
+ * Every snapshot carries a version, which only increases when the content of the configuration changes,
+ * so consumers that derive state from the configuration can tell whether they need to rebuild it by
+ * comparing a single long. The content hash is computed from the flattened entries and is the same for
+ * equal configurations, also across sources and processes.
+ */
+public final class ConfigSnapshot {
+
+    private final long version;
+    private final long contentHash;
+    private final Config config;
+    private final Map<String, Object> entries;
+    private volatile ConfigFootprint footprint;
+
+    ConfigSnapshot(long version, Config config, Map<String, Object> entries) {
+        this.version = version;
+        this.config = requireNonNull(config, "Argument 'config' must not be null");
+        this.entries = Collections.unmodifiableMap(requireNonNull(entries, "Argument 'entries' must not be null"));
+        this.contentHash = contentHashOf(entries);
+    }
+
+    /**
+     * Compute an order independent 64 bit hash of flattened configuration entries.
+     *
+     * @param entries the flattened entries
+     * @return the content hash
+     */
+    static long contentHashOf(Map<String, Object> entries) {
+        long hash = entries.size();
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            long keyHash = entry.getKey().hashCode();
+            long valueHash = Objects.hashCode(entry.getValue()) & 0xffffffffL;
+            hash += mix((keyHash << 32) ^ valueHash);
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Check whether {@code other} has the same content as this snapshot, regardless of version.
+     *
+     * @param other the snapshot to compare to
+     * @return true if the content is equal
+     */
+    boolean hasSameContent(ConfigSnapshot other) {
+        return contentHash == other.contentHash
+                && entries.equals(other.entries)
+                && Objects.equals(config.root(), other.config.root());
+    }
+
+    /**
+     * @return the version of this snapshot, increased every time a source publishes changed content
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return a hash of the content of this snapshot
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return the resolved Lightbend {@link Config}
+     */
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the flattened, unwrapped entries of the configuration, the map must not be modified
+     */
+    public Map<String, Object> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the estimated heap footprint of the configuration and its entries, computed on first use
+     */
+    public ConfigFootprint getFootprint() {
+        ConfigFootprint estimate = footprint;
+        if (estimate == null) {
+            estimate = ConfigFootprint.of(config);
+            footprint = estimate;
+        }
+        return estimate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s {version=%d, contentHash=%016x, entries=%d}",
+                this.getClass().getName(), version, contentHash, entries.size());
+    }
+}
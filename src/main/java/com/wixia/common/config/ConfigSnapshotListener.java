@@ -0,0 +1,28 @@
+package com.wixia.common.config;
+
+/**
+ * Receives the snapshots published by a {@link LightbendConfigurationSource}, for components that use
+ * the Lightbend {@link com.typesafe.config.Config} directly instead of going through cfg4j.
+ * <p>
+ * Listeners are called on a thread that loads the configuration, one event at a time and in publishing
+ * order, after the snapshot is served. They should return quickly. Exceptions they throw are logged.
+ */
+@FunctionalInterface
+public interface ConfigSnapshotListener {
+
+    /**
+     * Called when a snapshot with changed content has been published.
+     *
+     * @param snapshot the new snapshot
+     */
+    void onSnapshot(ConfigSnapshot snapshot);
+
+    /**
+     * Called when a reloaded configuration could not be loaded or failed validation. The current snapshot
+     * keeps being served.
+     *
+     * @param cause why the configuration was rejected
+     */
+    default void onRejected(Throwable cause) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+
+/**
+ * Validates a loaded configuration before a {@link LightbendConfigurationSource} publishes it.
+ * A configuration that fails validation is rejected and the last good snapshot keeps being served.
+ */
+@FunctionalInterface
+public interface ConfigValidator {
+
+    /**
+     * @param config the resolved candidate configuration
+     * @throws com.typesafe.config.ConfigException or another {@link RuntimeException} if {@code config} is invalid
+     */
+    void validate(Config config);
+}
@@ -0,0 +1,366 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigOriginFactory;
+import com.typesafe.config.ConfigSyntax;
+import com.typesafe.config.ConfigUtil;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads flat or shallowly nested JSON and properties documents one entry at a time, handing every leaf
+ * to a sink as a path expression and an unwrapped value.
+ * <p>
+ * Unlike {@link com.typesafe.config.ConfigFactory#parseReader(Reader, com.typesafe.config.ConfigParseOptions)}
+ * no token list or syntax tree is kept for the document. A sink that keeps every entry still holds the whole
+ * document once, and turning the entries into a {@link com.typesafe.config.Config} holds it a second time
+ * until the entries can be collected. Objects are flattened into paths, arrays are kept as {@link List} values. Substitutions, includes and
+ * comments are not supported, which is what makes the single pass possible.
+ */
+class FlatDocumentReader {
+
+    private final ConfigSyntax syntax;
+    private final String description;
+
+    FlatDocumentReader(ConfigSyntax syntax, String description) {
+        this.syntax = requireNonNull(syntax, "Argument 'syntax' must not be null");
+        this.description = requireNonNull(description, "Argument 'description' must not be null");
+
+        if (syntax != ConfigSyntax.JSON && syntax != ConfigSyntax.PROPERTIES) {
+            throw new IllegalArgumentException(
+                    String.format("Streaming is only supported for JSON and properties, not %s", syntax));
+        }
+    }
+
+    /**
+     * Read all entries of the document and hand them to {@code sink} in document order.
+     *
+     * @param reader the document, it is not closed by this method
+     * @param sink   receives the path expression and the unwrapped value of every leaf
+     */
+    void read(Reader reader, BiConsumer<String, Object> sink) {
+        requireNonNull(reader, "Argument 'reader' must not be null");
+        requireNonNull(sink, "Argument 'sink' must not be null");
+
+        try {
+            if (syntax == ConfigSyntax.JSON) {
+                new JsonReader(reader, sink).readDocument();
+            } else {
+                new ForwardingProperties(sink).load(reader);
+            }
+        } catch (IOException e) {
+            throw new ConfigException.IO(ConfigOriginFactory.newSimple(description), "Failed to read", e);
+        }
+    }
+
+    /**
+     * Read all entries of the document into a map that
+     * {@link com.typesafe.config.ConfigFactory#parseMap(Map, String)} accepts. A path that holds a value and is
+     * also the parent of other paths is resolved like Lightbend Config does: in properties the object wins and
+     * the value is dropped, in JSON it is a duplicate field and rejected.
+     *
+     * @param reader the document, it is not closed by this method
+     * @return the path expressions and unwrapped values of all leaves, in document order
+     * @throws ConfigException.Parse if the document is malformed
+     */
+    Map<String, Object> readEntries(Reader reader) {
+        final Map<String, Object> entries = new LinkedHashMap<>();
+        read(reader, (path, value) -> {
+            if (entries.containsKey(path) && syntax == ConfigSyntax.JSON) {
+                throw duplicate(path);
+            }
+            entries.put(path, value);
+        });
+
+        final Set<String> parents = new HashSet<>();
+        for (String path : entries.keySet()) {
+            final List<String> elements = ConfigUtil.splitPath(path);
+            for (int i = 1; i < elements.size(); i++) {
+                parents.add(ConfigUtil.joinPath(elements.subList(0, i)));
+            }
+        }
+        for (String parent : parents) {
+            if (entries.containsKey(parent)) {
+                if (syntax == ConfigSyntax.JSON) {
+                    throw duplicate(parent);
+                }
+                entries.remove(parent);
+            }
+        }
+        return entries;
+    }
+
+    private ConfigException duplicate(String path) {
+        return new ConfigException.Parse(ConfigOriginFactory.newSimple(description),
+                String.format("JSON does not allow duplicate fields: '%s' was already seen", path));
+    }
+
+    /**
+     * {@link Properties#load(Reader)} calls {@code put} for every entry it reads, so forwarding
+     * from there lets the JDK do the escaping and continuation lines without keeping the entries.
+     */
+    private static class ForwardingProperties extends Properties {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BiConsumer<String, Object> sink;
+
+        ForwardingProperties(BiConsumer<String, Object> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public synchronized Object put(Object key, Object value) {
+            sink.accept(ConfigUtil.joinPath(Arrays.asList(((String) key).split("\\.", -1))), value);
+            return null;
+        }
+    }
+
+    private class JsonReader {
+        private final Reader reader;
+        private final BiConsumer<String, Object> sink;
+        private int peeked = -2;
+        private long offset;
+
+        JsonReader(Reader reader, BiConsumer<String, Object> sink) {
+            this.reader = reader;
+            this.sink = sink;
+        }
+
+        void readDocument() throws IOException {
+            expect('{');
+            readMembers(new ArrayList<>());
+            if (peekSignificant() != -1) {
+                throw error("Expected end of document");
+            }
+        }
+
+        /**
+         * Read the members of an object whose opening brace has been consumed, flattening nested
+         * objects into {@code path}.
+         */
+        private void readMembers(List<String> path) throws IOException {
+            if (peekSignificant() == '}') {
+                next();
+                if (!path.isEmpty()) {
+                    sink.accept(ConfigUtil.joinPath(path), new LinkedHashMap<String, Object>());
+                }
+                return;
+            }
+
+            do {
+                path.add(readMemberName());
+                if (peekSignificant() == '{') {
+                    next();
+                    readMembers(path);
+                } else {
+                    sink.accept(ConfigUtil.joinPath(path), readValue());
+                }
+                path.remove(path.size() - 1);
+            } while (commaOr('}'));
+        }
+
+        private String readMemberName() throws IOException {
+            expect('"');
+            String name = readString();
+            expect(':');
+            return name;
+        }
+
+        private Object readValue() throws IOException {
+            int c = peekSignificant();
+            switch (c) {
+                case '{':
+                    next();
+                    Map<String, Object> object = new LinkedHashMap<>();
+                    if (peekSignificant() == '}') {
+                        next();
+                        return object;
+                    }
+                    do {
+                        String name = readMemberName();
+                        object.put(name, readValue());
+                    } while (commaOr('}'));
+                    return object;
+                case '[':
+                    next();
+                    List<Object> list = new ArrayList<>();
+                    if (peekSignificant() == ']') {
+                        next();
+                        return list;
+                    }
+                    do {
+                        list.add(readValue());
+                    } while (commaOr(']'));
+                    return list;
+                case '"':
+                    next();
+                    return readString();
+                case 't':
+                    readLiteral("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    readLiteral("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    readLiteral("null");
+                    return null;
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        return readNumber();
+                    }
+                    throw error("Expected a value");
+            }
+        }
+
+        private String readString() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                int c = next();
+                if (c == -1) {
+                    throw error("Unterminated string");
+                } else if (c == '"') {
+                    return sb.toString();
+                } else if (c == '\\') {
+                    int escaped = next();
+                    switch (escaped) {
+                        case '"':
+                        case '\\':
+                        case '/':
+                            sb.append((char) escaped);
+                            break;
+                        case 'b':
+                            sb.append('\b');
+                            break;
+                        case 'f':
+                            sb.append('\f');
+                            break;
+                        case 'n':
+                            sb.append('\n');
+                            break;
+                        case 'r':
+                            sb.append('\r');
+                            break;
+                        case 't':
+                            sb.append('\t');
+                            break;
+                        case 'u':
+                            char[] hex = new char[4];
+                            for (int i = 0; i < hex.length; i++) {
+                                int h = next();
+                                if (Character.digit(h, 16) < 0) {
+                                    throw error("Invalid unicode escape");
+                                }
+                                hex[i] = (char) h;
+                            }
+                            sb.append((char) Integer.parseInt(new String(hex), 16));
+                            break;
+                        default:
+                            throw error("Invalid escape sequence");
+                    }
+                } else {
+                    sb.append((char) c);
+                }
+            }
+        }
+
+        private Number readNumber() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            boolean integral = true;
+            int c = peek();
+            while (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9')) {
+                if (c == '.' || c == 'e' || c == 'E') {
+                    integral = false;
+                }
+                sb.append((char) next());
+                c = peek();
+            }
+
+            String text = sb.toString();
+            if (integral) {
+                try {
+                    long value = Long.parseLong(text);
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        return (int) value;
+                    }
+                    return value;
+                } catch (NumberFormatException e) {
+                    // Too large for a long, or not a number at all
+                }
+            }
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                throw error(String.format("Invalid number '%s'", text));
+            }
+        }
+
+        private void readLiteral(String literal) throws IOException {
+            for (int i = 0; i < literal.length(); i++) {
+                if (next() != literal.charAt(i)) {
+                    throw error(String.format("Expected '%s'", literal));
+                }
+            }
+        }
+
+        /**
+         * @return true if a comma was read, false if {@code close} was read
+         */
+        private boolean commaOr(char close) throws IOException {
+            int c = peekSignificant();
+            next();
+            if (c == ',') {
+                return true;
+            } else if (c == close) {
+                return false;
+            }
+            throw error(String.format("Expected ',' or '%s'", close));
+        }
+
+        private void expect(char expected) throws IOException {
+            if (peekSignificant() != expected) {
+                throw error(String.format("Expected '%s'", expected));
+            }
+            next();
+        }
+
+        private int peekSignificant() throws IOException {
+            int c = peek();
+            while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                next();
+                c = peek();
+            }
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) {
+                peeked = reader.read();
+            }
+            return peeked;
+        }
+
+        private int next() throws IOException {
+            int c = peek();
+            peeked = -2;
+            offset++;
+            return c;
+        }
+
+        private ConfigException error(String message) {
+            return new ConfigException.Parse(ConfigOriginFactory.newSimple(description),
+                    String.format("%s at character %d", message, offset));
+        }
+    }
+}
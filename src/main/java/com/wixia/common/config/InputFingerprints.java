@@ -0,0 +1,80 @@
+package com.wixia.common.config;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Enumeration;
+
+/**
+ * Cheap identifiers of configuration inputs, used to recognise input that has not changed since it was
+ * last loaded, without reading or parsing it.
+ */
+final class InputFingerprints {
+
+    private InputFingerprints() {
+    }
+
+    /**
+     * @param file the input file
+     * @return an identifier made of the path, size and modification time of {@code file},
+     * or null if the file can not be read
+     */
+    static String ofFile(Path file) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return String.format("%s|%d|%d",
+                    file.toAbsolutePath(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param url the input URL
+     * @return for a {@code file:} URL the identifier of the file, for a {@code jar:} URL the identifier of the
+     * jar file and the entry name, or null for other protocols, whose content can not be known without fetching it
+     */
+    static String ofUrl(URL url) {
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return ofFile(Paths.get(url.toURI()));
+            } else if ("jar".equals(url.getProtocol())) {
+                final String spec = url.getFile();
+                final int separator = spec.indexOf("!/");
+                final String jar = separator < 0 ? null : ofUrl(new URL(spec.substring(0, separator)));
+                return jar != null ? jar + "!/" + spec.substring(separator + 2) : null;
+            }
+        } catch (URISyntaxException | MalformedURLException | IllegalArgumentException e) {
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * @param classLoader the class loader to find the resource with
+     * @param name        the resource name
+     * @return an identifier made of all resources called {@code name}, as in {@link #ofUrl(URL)}, or null if
+     * any of them can not be identified
+     */
+    static String ofResource(ClassLoader classLoader, String name) {
+        final StringBuilder fingerprint = new StringBuilder(name);
+        try {
+            final Enumeration<URL> urls = classLoader.getResources(name);
+            while (urls.hasMoreElements()) {
+                final String url = ofUrl(urls.nextElement());
+                if (url == null) {
+                    return null;
+                }
+                fingerprint.append(';').append(url);
+            }
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+        return fingerprint.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.wixia.common.config;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * A point in time report created by {@link KeyAccessStatistics}.
+ */
+public class KeyAccessReport {
+
+    private final Map<String, Long> hotKeys;
+    private final SortedSet<String> deadKeys;
+    private final long totalReads;
+
+    KeyAccessReport(Map<String, Long> hotKeys, SortedSet<String> deadKeys, long totalReads) {
+        this.hotKeys = Collections.unmodifiableMap(hotKeys);
+        this.deadKeys = Collections.unmodifiableSortedSet(deadKeys);
+        this.totalReads = totalReads;
+    }
+
+    /**
+     * @return the most read keys and their read counts, most read first
+     */
+    public Map<String, Long> getHotKeys() {
+        return hotKeys;
+    }
+
+    /**
+     * @return the keys in the current configuration that have not been read since startup
+     */
+    public SortedSet<String> getDeadKeys() {
+        return deadKeys;
+    }
+
+    /**
+     * @return the (estimated) number of reads of all keys since startup
+     */
+    public long getTotalReads() {
+        return totalReads;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s {totalReads=%d, hotKeys=%s, deadKeys=%s}",
+                this.getClass().getName(), totalReads, hotKeys, deadKeys);
+    }
+}
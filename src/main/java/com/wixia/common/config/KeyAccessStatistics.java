@@ -0,0 +1,89 @@
+package com.wixia.common.config;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often each configuration key is read through a {@link LightbendConfigurationSource}.
+ * <p>
+ * Counters are {@link LongAdder} instances, so concurrent readers of the same key do not contend on a
+ * single memory location. With a sampling interval larger than one only about every n:th read is recorded,
+ * and recorded reads are weighted by n, which keeps the counts comparable while reducing the overhead.
+ */
+public class KeyAccessStatistics {
+
+    private final int samplingInterval;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param samplingInterval record about one in {@code samplingInterval} reads, 1 records every read
+     */
+    public KeyAccessStatistics(int samplingInterval) {
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException("Argument 'samplingInterval' must be at least 1");
+        }
+        this.samplingInterval = samplingInterval;
+    }
+
+    /**
+     * Record a read of {@code key}.
+     *
+     * @param key the key that was read
+     */
+    void record(String key) {
+        if (samplingInterval > 1 && ThreadLocalRandom.current().nextInt(samplingInterval) != 0) {
+            return;
+        }
+        counters.computeIfAbsent(key, k -> new LongAdder()).add(samplingInterval);
+    }
+
+    /**
+     * @param key the key to get the count for
+     * @return the (estimated) number of reads of {@code key} since startup
+     */
+    public long count(String key) {
+        LongAdder counter = counters.get(key);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Create a report of the most read keys, and of the keys in {@code knownKeys} that were never read.
+     *
+     * @param hotKeyLimit the maximum number of hot keys in the report
+     * @param knownKeys   all keys that are currently in the configuration
+     * @return a new {@link KeyAccessReport}
+     */
+    public KeyAccessReport report(int hotKeyLimit, Collection<String> knownKeys) {
+        List<Map.Entry<String, Long>> counts = new ArrayList<>(counters.size());
+        counters.forEach((key, counter) -> counts.add(new AbstractMap.SimpleImmutableEntry<>(key, counter.sum())));
+        counts.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        long totalReads = 0;
+        Map<String, Long> hotKeys = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : counts) {
+            totalReads += entry.getValue();
+            if (hotKeys.size() < hotKeyLimit) {
+                hotKeys.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        TreeSet<String> deadKeys = new TreeSet<>();
+        for (String key : knownKeys) {
+            if (!counters.containsKey(key)) {
+                deadKeys.add(key);
+            }
+        }
+
+        return new KeyAccessReport(hotKeys, deadKeys, totalReads);
+    }
+}
@@ -0,0 +1,239 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Binds an interface directly to the {@link Config} of a {@link LightbendConfigurationSource}, as an
+ * alternative to cfg4j's {@link org.cfg4j.provider.ConfigurationProvider#bind(String, Class)}.
+ * <p>
+ * Methods are mapped to configuration paths and typed getters once, when binding. The converted values
+ * are cached per {@link ConfigSnapshot}. As long as the snapshot version is unchanged, a call to a bound
+ * method goes through the proxy, looks up the method's index and the source's current snapshot, and reads
+ * the cached value, instead of a {@link java.util.Properties} lookup and a string conversion. Values follow
+ * the snapshots published by the source's {@code init()} and {@code reload()}.
+ * <p>
+ * Supported return types are {@link String}, {@code int}, {@code long}, {@code double}, {@code boolean}
+ * and their wrappers, {@link Duration}, {@link URL}, {@link URI}, enums, {@link Config}, {@link Object}
+ * and {@link List} of strings, integers, longs, doubles and booleans. Default methods are not bound, they
+ * keep their implementation and can call the bound methods.
+ * <p>
+ * If a reload removes a bound path or gives it a value that can not be converted, the method keeps returning
+ * its last good value, while the other methods follow the new snapshot.
+ */
+public class LightbendConfigBinder {
+
+    private LightbendConfigBinder() {
+    }
+
+    /**
+     * Bind {@code type} to the configuration below {@code prefix}. Every method of the interface is mapped
+     * to {@code prefix.methodName}. All values are read once while binding, so missing paths and
+     * conversion errors are reported here rather than on the first call.
+     *
+     * @param source the source to read the configuration from
+     * @param prefix the path that the methods are relative to, empty for the root
+     * @param type   the interface to bind
+     * @param <T>    the interface type
+     * @return an instance of {@code type} backed by {@code source}
+     */
+    public static <T> T bind(LightbendConfigurationSource source, String prefix, Class<T> type) {
+        requireNonNull(source, "Argument 'source' must not be null");
+        requireNonNull(prefix, "Argument 'prefix' must not be null");
+        requireNonNull(type, "Argument 'type' must not be null");
+
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException(String.format("%s is not an interface", type.getName()));
+        }
+
+        final BoundValues handler = new BoundValues(source, prefix, type);
+        handler.current();
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static class BoundValues implements InvocationHandler {
+        private final LightbendConfigurationSource source;
+        private final String description;
+        private final Map<Method, Integer> indexes = new HashMap<>();
+        private final List<Function<Config, Object>> getters = new ArrayList<>();
+        private final Map<Method, MethodHandle> defaultMethods = new HashMap<>();
+        private volatile Values values = new Values(-1, null);
+
+        BoundValues(LightbendConfigurationSource source, String prefix, Class<?> type) {
+            this.source = source;
+            this.description = String.format("%s bound to '%s'", type.getName(), prefix);
+
+            for (Method method : type.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                if (method.isDefault()) {
+                    defaultMethods.put(method, defaultMethodHandle(method));
+                    continue;
+                }
+                if (method.getParameterCount() != 0) {
+                    throw new IllegalArgumentException(
+                            String.format("Can not bind %s, only methods without parameters are supported", method));
+                }
+                final String path = prefix.isEmpty() ? method.getName() : prefix + "." + method.getName();
+                indexes.put(method, getters.size());
+                getters.add(getterFor(path, method.getGenericReturnType()));
+            }
+        }
+
+        /**
+         * @return the values of the current snapshot, converting them if the snapshot has changed. A value
+         * that can not be read from a later snapshot is kept from the previous one
+         */
+        Object[] current() {
+            final ConfigSnapshot snapshot = source.getSnapshot();
+            Values cached = values;
+            if (cached.version != snapshot.getVersion()) {
+                final Object[] converted = new Object[getters.size()];
+                for (int i = 0; i < converted.length; i++) {
+                    try {
+                        converted[i] = getters.get(i).apply(snapshot.getConfig());
+                    } catch (ConfigException e) {
+                        if (cached.values == null) {
+                            throw e;
+                        }
+                        converted[i] = cached.values[i];
+                    }
+                }
+                cached = new Values(snapshot.getVersion(), converted);
+                values = cached;
+            }
+            return cached.values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final Integer index = indexes.get(method);
+            if (index != null) {
+                return current()[index];
+            }
+            final MethodHandle defaultMethod = defaultMethods.get(method);
+            if (defaultMethod != null) {
+                return defaultMethod.bindTo(proxy).invokeWithArguments(args == null ? new Object[0] : args);
+            }
+
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return description;
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }
+    }
+
+    /**
+     * @return a handle that calls the interface's own implementation of {@code method}, bypassing the proxy
+     */
+    private static MethodHandle defaultMethodHandle(Method method) {
+        final Class<?> declaringClass = method.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup;
+            try {
+                // Java 9 and later
+                final Method privateLookupIn = MethodHandles.class.getMethod(
+                        "privateLookupIn", Class.class, MethodHandles.Lookup.class);
+                lookup = (MethodHandles.Lookup) privateLookupIn.invoke(null, declaringClass, MethodHandles.lookup());
+            } catch (NoSuchMethodException e) {
+                // Java 8 has no public way to look up private access in another class
+                final Constructor<MethodHandles.Lookup> constructor =
+                        MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+                constructor.setAccessible(true);
+                lookup = constructor.newInstance(declaringClass, MethodHandles.Lookup.PRIVATE);
+            }
+            return lookup.unreflectSpecial(method, declaringClass);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(String.format("Can not bind default method %s", method), e);
+        }
+    }
+
+    private static class Values {
+        final long version;
+        final Object[] values;
+
+        Values(long version, Object[] values) {
+            this.version = version;
+            this.values = values;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Function<Config, Object> getterFor(String path, Type type) {
+        if (type == String.class) {
+            return config -> config.getString(path);
+        } else if (type == int.class || type == Integer.class) {
+            return config -> config.getInt(path);
+        } else if (type == long.class || type == Long.class) {
+            return config -> config.getLong(path);
+        } else if (type == double.class || type == Double.class) {
+            return config -> config.getDouble(path);
+        } else if (type == boolean.class || type == Boolean.class) {
+            return config -> config.getBoolean(path);
+        } else if (type == Duration.class) {
+            return config -> config.getDuration(path);
+        } else if (type == URL.class) {
+            return config -> toUrl(config, path);
+        } else if (type == URI.class) {
+            return config -> URI.create(config.getString(path));
+        } else if (type == Config.class) {
+            return config -> config.getConfig(path);
+        } else if (type == Object.class) {
+            return config -> config.getAnyRef(path);
+        } else if (type instanceof Class && ((Class<?>) type).isEnum()) {
+            return config -> config.getEnum((Class<Enum>) type, path);
+        } else if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == List.class) {
+            final Type elementType = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (elementType == String.class) {
+                return config -> config.getStringList(path);
+            } else if (elementType == Integer.class) {
+                return config -> config.getIntList(path);
+            } else if (elementType == Long.class) {
+                return config -> config.getLongList(path);
+            } else if (elementType == Double.class) {
+                return config -> config.getDoubleList(path);
+            } else if (elementType == Boolean.class) {
+                return config -> config.getBooleanList(path);
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("Can not bind '%s' to unsupported type %s", path, type));
+    }
+
+    private static URL toUrl(Config config, String path) {
+        try {
+            return new URL(config.getString(path));
+        } catch (MalformedURLException e) {
+            throw new ConfigException.BadValue(config.origin(), path, e.getMessage(), e);
+        }
+    }
+}
@@ -1,9 +1,34 @@
 package com.wixia.common.config;
 
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigOriginFactory;
 import com.typesafe.config.ConfigParseOptions;
 import com.typesafe.config.ConfigResolveOptions;
+import com.typesafe.config.ConfigSyntax;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static java.util.Objects.requireNonNull;
 
@@ -16,8 +41,14 @@ import static java.util.Objects.requireNonNull;
  */
 public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
 
+    private static final Logger LOG = LoggerFactory.getLogger(LightbendConfigFactoryHandler.class);
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     private final LightbendLoadStrategy loadStrategy;
     private String prefix;
+    private Consumer<SubstitutionProfile> substitutionProfileConsumer;
+    private boolean prefixScoped;
 
     public LightbendConfigFactoryHandler(
             LightbendLoadStrategy loadStrategy) {
@@ -38,9 +69,40 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         return this;
     }
 
+    /**
+     * Profile the resolution of substitutions after every load, see {@link SubstitutionProfiler}. This loads
+     * the configuration a second time, unresolved, and is meant for diagnosing slow configurations.
+     *
+     * @param consumer receives the profile of every load
+     * @return this handler with substitution profiling enabled
+     */
+    public LightbendConfigFactoryHandler withSubstitutionProfiling(Consumer<SubstitutionProfile> consumer) {
+        this.substitutionProfileConsumer = requireNonNull(consumer, "Argument 'consumer' must not be null");
+        return this;
+    }
+
+    /**
+     * Resolve only the subtree at the prefix and the paths its substitutions depend on, instead of the whole
+     * configuration. Everything else is left out of the loaded configuration. Substitutions are resolved with
+     * the {@link ConfigResolveOptions} of the load strategy, see {@link LightbendLoadStrategy#resolveOptions()}.
+     *
+     * @return this handler with prefix scoped loading enabled
+     */
+    public LightbendConfigFactoryHandler withPrefixScopedLoading() {
+        if (prefix == null) {
+            throw new IllegalStateException("Prefix scoped loading requires a prefix");
+        }
+        this.prefixScoped = true;
+        return this;
+    }
+
     @Override
     public Config init() {
-        final Config defaultConfig = loadStrategy.load();
+        final Config defaultConfig = prefixScoped ? loadScoped() : loadStrategy.load();
+
+        if (substitutionProfileConsumer != null) {
+            profileSubstitutions();
+        }
 
         if (prefix != null) {
             return defaultConfig.getConfig(prefix).withFallback(defaultConfig);
@@ -54,6 +116,129 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         return init();
     }
 
+    /**
+     * Narrow the unresolved configuration down to the prefix and its dependencies, and resolve that. Paths
+     * are looked up in the whole configuration, so anything the dependency search misses, like substitutions
+     * in keys, is still resolved correctly, and if the configuration can not be narrowed down or resolved
+     * that way it is loaded in full.
+     */
+    private Config loadScoped() {
+        final Config unresolved = loadStrategy.loadUnresolved();
+
+        Config scoped = ConfigFactory.empty();
+        try {
+            for (String path : outermost(SubstitutionProfiler.findDependencies(
+                    SubstitutionProfiler.findReferences(unresolved), prefix))) {
+                scoped = scoped.withFallback(unresolved.withOnlyPath(path));
+            }
+            // Resolving against the whole configuration fails for paths that refer to their own earlier
+            // value, like a = ${a}":b", which only resolve within the configuration they were merged in
+            return scoped.resolveWith(unresolved, loadStrategy.resolveOptions());
+        } catch (ConfigException e) {
+            return loadStrategy.load();
+        }
+    }
+
+    /**
+     * Drop the paths that are inside other paths, merging the same unresolved value twice would not resolve.
+     */
+    private static Set<String> outermost(Set<String> paths) {
+        final Set<String> outermost = new TreeSet<>(paths);
+        outermost.removeIf(path -> paths.stream().anyMatch(
+                other -> !other.equals(path) && SubstitutionProfiler.isWithin(path, other)));
+        return outermost;
+    }
+
+    private void profileSubstitutions() {
+        try {
+            substitutionProfileConsumer.accept(new SubstitutionProfiler().profile(loadStrategy.loadUnresolved()));
+        } catch (RuntimeException e) {
+            // Profiling is a diagnostic, it must not fail a load that succeeded
+            LOG.warn("Substitution profiling failed", e);
+        }
+    }
+
+    /**
+     * Identify the input through the load strategy, or through the {@code config.resource}, {@code config.file}
+     * or {@code config.url} system property that Lightbend Config reads the application configuration from.
+     * Resources and URLs are identified by the files they are read from, URLs of other protocols are not
+     * identified.
+     * <p>
+     * Only the application document itself is identified. Documents it includes, {@code reference.conf} and
+     * system property overrides are not, so a load that was rejected because of one of them is tried again
+     * once the application document changes, or on every reload if the input can not be identified.
+     *
+     * @return an identifier of the input, or null if it can not be identified
+     */
+    @Override
+    public String fingerprint() {
+        final String fingerprint = loadStrategy.fingerprint();
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+
+        final String configResource = System.getProperty("config.resource");
+        if (configResource != null) {
+            return InputFingerprints.ofResource(contextClassLoader(),
+                    configResource.startsWith("/") ? configResource.substring(1) : configResource);
+        }
+        final String configFile = System.getProperty("config.file");
+        if (configFile != null) {
+            return InputFingerprints.ofFile(Paths.get(configFile));
+        }
+        final String configUrl = System.getProperty("config.url");
+        if (configUrl != null) {
+            try {
+                return InputFingerprints.ofUrl(new URL(configUrl));
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The configuration stack that {@link ConfigFactory#load(ClassLoader, Config, ConfigResolveOptions)} resolves:
+     * system property (and optionally environment variable) overrides, then the application configuration,
+     * then the reference configuration of {@code classLoader}.
+     *
+     * @param classLoader the class loader to find reference.conf with
+     * @param application the application configuration
+     * @return the unresolved stack
+     */
+    static Config unresolvedStack(ClassLoader classLoader, Config application) {
+        return ConfigFactory.defaultOverrides(classLoader)
+                .withFallback(application)
+                .withFallback(ConfigFactory.defaultReferenceUnresolved(classLoader));
+    }
+
+    /**
+     * Wrap {@code in} in a {@link GZIPInputStream} if it starts with the gzip magic bytes.
+     *
+     * @param in a compressed or uncompressed stream
+     * @return a stream of the uncompressed content
+     * @throws IOException if the stream can not be read
+     */
+    static InputStream decompressing(InputStream in) throws IOException {
+        final BufferedInputStream buffered = new BufferedInputStream(in, GZIP_BUFFER_SIZE);
+        buffered.mark(2);
+        final int first = buffered.read();
+        final int second = buffered.read();
+        buffered.reset();
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return new GZIPInputStream(buffered, GZIP_BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    static ClassLoader contextClassLoader() {
+        return Thread.currentThread().getContextClassLoader();
+    }
+
+    static ConfigParseOptions withClassLoader(ConfigParseOptions parseOptions) {
+        return parseOptions.getClassLoader() != null ? parseOptions : parseOptions.setClassLoader(contextClassLoader());
+    }
+
     /**
      * Default load strategy, used when no arguments are set. It will call {@link ConfigFactory#load()}
      */
@@ -68,6 +253,16 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load();
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load()}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(contextClassLoader(), ConfigFactory.defaultApplication(contextClassLoader()));
+        }
     }
 
     /**
@@ -89,6 +284,16 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(classLoader);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ClassLoader)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(classLoader, ConfigFactory.defaultApplication(classLoader));
+        }
     }
 
     /**
@@ -113,6 +318,16 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(classLoader, customConfig);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ClassLoader, Config)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(classLoader, customConfig);
+        }
     }
 
     /**
@@ -140,6 +355,21 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(classLoader, customConfig, configResolveOptions);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ClassLoader, Config, ConfigResolveOptions)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(classLoader, customConfig);
+        }
+
+        @Override
+        public ConfigResolveOptions resolveOptions() {
+            return configResolveOptions;
+        }
     }
 
     /**
@@ -164,6 +394,17 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(classLoader, configParseOptions);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ClassLoader, ConfigParseOptions)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(contextClassLoader(),
+                    ConfigFactory.defaultApplication(configParseOptions.setClassLoader(classLoader)));
+        }
     }
 
     /**
@@ -192,6 +433,21 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(classLoader, configParseOptions, configResolveOptions);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ClassLoader, ConfigParseOptions, ConfigResolveOptions)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(classLoader, ConfigFactory.defaultApplication(withClassLoader(configParseOptions)));
+        }
+
+        @Override
+        public ConfigResolveOptions resolveOptions() {
+            return configResolveOptions;
+        }
     }
 
     /**
@@ -216,6 +472,21 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(classLoader, configResolveOptions);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ClassLoader, ConfigResolveOptions)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(classLoader, ConfigFactory.defaultApplication(classLoader));
+        }
+
+        @Override
+        public ConfigResolveOptions resolveOptions() {
+            return configResolveOptions;
+        }
     }
 
     /**
@@ -240,6 +511,16 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(classLoader, resourceBasename);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ClassLoader, String)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(classLoader, ConfigFactory.parseResourcesAnySyntax(classLoader, resourceBasename));
+        }
     }
 
     /**
@@ -271,6 +552,22 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(classLoader, resourceBasename, configParseOptions, configResolveOptions);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ClassLoader, String, ConfigParseOptions, ConfigResolveOptions)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(classLoader, ConfigFactory.parseResourcesAnySyntax(
+                    resourceBasename, configParseOptions.setClassLoader(classLoader)));
+        }
+
+        @Override
+        public ConfigResolveOptions resolveOptions() {
+            return configResolveOptions;
+        }
     }
 
     /**
@@ -294,6 +591,16 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(customConfig);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(Config)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(contextClassLoader(), customConfig);
+        }
     }
 
     /**
@@ -319,6 +626,21 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(customConfig, resolveOptions);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(Config, ConfigResolveOptions)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(contextClassLoader(), customConfig);
+        }
+
+        @Override
+        public ConfigResolveOptions resolveOptions() {
+            return resolveOptions;
+        }
     }
 
     /**
@@ -342,6 +664,16 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(parseOptions);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ConfigParseOptions)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(contextClassLoader(), ConfigFactory.defaultApplication(withClassLoader(parseOptions)));
+        }
     }
 
     /**
@@ -367,6 +699,21 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(parseOptions, resolveOptions);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(ConfigParseOptions, ConfigResolveOptions)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(contextClassLoader(), ConfigFactory.defaultApplication(withClassLoader(parseOptions)));
+        }
+
+        @Override
+        public ConfigResolveOptions resolveOptions() {
+            return resolveOptions;
+        }
     }
 
     /**
@@ -390,6 +737,16 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(resourceBasename);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(String resourceBasename)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(contextClassLoader(), ConfigFactory.parseResourcesAnySyntax(resourceBasename));
+        }
     }
 
     /**
@@ -419,6 +776,381 @@ public class LightbendConfigFactoryHandler implements ConfigFactoryHandler {
         public Config load() {
             return ConfigFactory.load(resourceBasename, parseOptions, resolveOptions);
         }
+
+        /**
+         * Assemble the same configuration stack as {@link ConfigFactory#load(String resourceBasename, ConfigParseOptions, ConfigResolveOptions)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(contextClassLoader(),
+                    ConfigFactory.parseResourcesAnySyntax(resourceBasename, withClassLoader(parseOptions)));
+        }
+
+        @Override
+        public ConfigResolveOptions resolveOptions() {
+            return resolveOptions;
+        }
+    }
+
+    /**
+     * Streaming load strategy for large, generated JSON or properties files. The file is read one entry
+     * at a time by a {@link FlatDocumentReader} and the entries are turned into a {@link Config} with
+     * {@link ConfigFactory#parseMap(Map, String)}, so no syntax tree of the whole document is built. While
+     * the {@link Config} is built, the entries and the {@link Config} are both in memory.
+     * Gzip compressed files are decompressed on the fly.
+     * It will then call {@link ConfigFactory#load(Config)} with the result.
+     */
+    static class StreamingFileLoadStrategy implements LightbendLoadStrategy {
+
+        private final Path file;
+        private final ConfigSyntax syntax;
+
+        StreamingFileLoadStrategy(Path file, ConfigSyntax syntax) {
+            this.file = requireNonNull(file, "Argument 'file' must not be null");
+            this.syntax = requireNonNull(syntax, "Argument 'syntax' must not be null");
+        }
+
+        /**
+         * Stream the file into a {@link Config} and call {@link ConfigFactory#load(Config)}
+         *
+         * @return {@link Config} object from Lightbend
+         */
+        @Override
+        public Config load() {
+            return ConfigFactory.load(parse());
+        }
+
+        /**
+         * Stream the file into a {@link Config} and assemble the same configuration stack as
+         * {@link ConfigFactory#load(Config)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(contextClassLoader(), parse());
+        }
+
+        private Config parse() {
+            final String description = file.toString();
+            final Map<String, Object> entries;
+
+            try (Reader reader = new BufferedReader(new InputStreamReader(
+                    decompressing(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                entries = new FlatDocumentReader(syntax, description).readEntries(reader);
+            } catch (IOException e) {
+                throw new ConfigException.IO(ConfigOriginFactory.newSimple(description), "Failed to open", e);
+            }
+
+            return ConfigFactory.parseMap(entries, description);
+        }
+
+        @Override
+        public String fingerprint() {
+            return InputFingerprints.ofFile(file);
+        }
     }
-}
 
+    /**
+     * Load strategy that assembles the same configuration stack as {@link ConfigFactory#load(ClassLoader, Config,
+     * ConfigResolveOptions)} from its parts, so that the parts can be shared between loads. Documents are
+     * parsed through a {@link SharedParseCache} and the overrides come from {@link ConfigOverlays}, when given.
+     * <p>
+     * Every argument is optional, and the application configuration is, in order of precedence, the custom
+     * config, the resource basename or Lightbend Config's default application.
+     */
+    static class ComposedLoadStrategy implements LightbendLoadStrategy {
+
+        private final ClassLoader classLoader;
+        private final String resourceBasename;
+        private final Config customConfig;
+        private final ConfigParseOptions parseOptions;
+        private final ConfigResolveOptions resolveOptions;
+        private final SharedParseCache parseCache;
+        private final ConfigOverlays overlays;
+
+        ComposedLoadStrategy(ClassLoader classLoader, String resourceBasename, Config customConfig,
+                             ConfigParseOptions parseOptions, ConfigResolveOptions resolveOptions,
+                             SharedParseCache parseCache, ConfigOverlays overlays) {
+            this.classLoader = classLoader;
+            this.resourceBasename = resourceBasename;
+            this.customConfig = customConfig;
+            this.parseOptions = parseOptions != null ? parseOptions : ConfigParseOptions.defaults();
+            this.resolveOptions = resolveOptions != null ? resolveOptions : ConfigResolveOptions.defaults();
+            this.parseCache = parseCache;
+            this.overlays = overlays;
+        }
+
+        /**
+         * Assemble and resolve the configuration stack
+         *
+         * @return {@link Config} object from Lightbend
+         */
+        @Override
+        public Config load() {
+            return loadUnresolved().resolve(resolveOptions);
+        }
+
+        /**
+         * Assemble the configuration stack from its parts, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            final ClassLoader loader = classLoader != null ? classLoader
+                    : parseOptions.getClassLoader() != null ? parseOptions.getClassLoader()
+                    : contextClassLoader();
+            final ConfigParseOptions options = parseOptions.setClassLoader(loader);
+
+            final Config application;
+            if (customConfig != null) {
+                application = customConfig;
+            } else if (resourceBasename != null) {
+                application = parseCache != null
+                        ? parseCache.parseResourcesAnySyntax(loader, resourceBasename, options)
+                        : ConfigFactory.parseResourcesAnySyntax(resourceBasename, options);
+            } else {
+                application = parseCache != null
+                        ? parseCache.defaultApplication(loader, options)
+                        : ConfigFactory.defaultApplication(options);
+            }
+
+            final Config reference = parseCache != null
+                    ? parseCache.referenceUnresolved(loader)
+                    : ConfigFactory.defaultReferenceUnresolved(loader);
+
+            return (overlays != null ? overlays.get() : ConfigFactory.defaultOverrides(loader))
+                    .withFallback(application)
+                    .withFallback(reference);
+        }
+
+        @Override
+        public ConfigResolveOptions resolveOptions() {
+            return resolveOptions;
+        }
+    }
+
+    /**
+     * Load strategy that fetches the resolved configuration from a {@link LocalConfigDaemon} on the same host,
+     * and only the top level paths that changed once it has a snapshot. If the daemon can not be reached it
+     * loads the configuration itself with the fallback strategy, and tries the daemon again on the next load.
+     */
+    static class DaemonLoadStrategy implements LightbendLoadStrategy {
+
+        private final int port;
+        private final Path tokenFile;
+        private final int timeoutMillis;
+        private final LightbendLoadStrategy fallback;
+        private LocalConfigDaemon.Received received;
+
+        DaemonLoadStrategy(int port, Path tokenFile, int timeoutMillis, LightbendLoadStrategy fallback) {
+            this.port = port;
+            this.tokenFile = tokenFile != null ? tokenFile : LocalConfigDaemon.defaultTokenFile(port);
+            this.timeoutMillis = timeoutMillis;
+            this.fallback = requireNonNull(fallback, "Argument 'fallback' must not be null");
+        }
+
+        /**
+         * Fetch the configuration from the daemon, or call the fallback strategy if the daemon is gone
+         *
+         * @return {@link Config} object from Lightbend, the same instance as long as the daemon's snapshot
+         * is unchanged
+         */
+        @Override
+        public synchronized Config load() {
+            try {
+                received = LocalConfigDaemon.fetch(port, tokenFile, timeoutMillis, received);
+                return received.config;
+            } catch (IOException | ConfigException e) {
+                received = null;
+                return fallback.load();
+            }
+        }
+    }
+
+    /**
+     * Base of the load strategies for gzip compressed documents. The document is decompressed in a stream
+     * straight into Lightbend Config's parser, so the uncompressed text is never held in memory as a whole.
+     * Uncompressed documents are accepted as well. Includes are resolved like for
+     * {@link ConfigFactory#parseReader(Reader, ConfigParseOptions)}, not relative to the document.
+     * It will then call {@link ConfigFactory#load(ClassLoader, Config)} with the result, with the class loader
+     * of the strategy or else the context class loader.
+     */
+    abstract static class GzipLoadStrategy implements LightbendLoadStrategy {
+
+        private final ClassLoader classLoader;
+        private final ConfigSyntax syntax;
+
+        GzipLoadStrategy(ClassLoader classLoader, ConfigSyntax syntax) {
+            this.classLoader = classLoader;
+            this.syntax = requireNonNull(syntax, "Argument 'syntax' must not be null");
+        }
+
+        /**
+         * Decompress and parse the document and call {@link ConfigFactory#load(ClassLoader, Config)}
+         *
+         * @return {@link Config} object from Lightbend
+         */
+        @Override
+        public Config load() {
+            return ConfigFactory.load(classLoader(), parse());
+        }
+
+        /**
+         * Decompress and parse the document and assemble the same configuration stack as
+         * {@link ConfigFactory#load(ClassLoader, Config)}, without resolving it
+         *
+         * @return unresolved {@link Config} object from Lightbend
+         */
+        @Override
+        public Config loadUnresolved() {
+            return unresolvedStack(classLoader(), parse());
+        }
+
+        ClassLoader classLoader() {
+            return classLoader != null ? classLoader : contextClassLoader();
+        }
+
+        abstract Config parse();
+
+        Config parse(InputStream compressed, String description) {
+            try (InputStream raw = compressed;
+                 Reader reader = new InputStreamReader(decompressing(raw), StandardCharsets.UTF_8)) {
+                return ConfigFactory.parseReader(reader, ConfigParseOptions.defaults()
+                        .setSyntax(syntax).setOriginDescription(description).setClassLoader(classLoader()));
+            } catch (IOException e) {
+                throw new ConfigException.IO(ConfigOriginFactory.newSimple(description), "Failed to read", e);
+            }
+        }
+    }
+
+    /**
+     * Load strategy for a gzip compressed file. The parsed document is kept and reused as long as the size
+     * and modification time of the file are unchanged.
+     */
+    static class GzipFileLoadStrategy extends GzipLoadStrategy {
+
+        private final Path file;
+        private String parsedFingerprint;
+        private Config parsed;
+
+        GzipFileLoadStrategy(Path file, ConfigSyntax syntax) {
+            super(null, syntax);
+            this.file = requireNonNull(file, "Argument 'file' must not be null");
+        }
+
+        @Override
+        synchronized Config parse() {
+            final String fingerprint = fingerprint();
+            if (fingerprint != null && fingerprint.equals(parsedFingerprint)) {
+                return parsed;
+            }
+
+            try {
+                parsed = parse(Files.newInputStream(file), file.toString());
+            } catch (IOException e) {
+                throw new ConfigException.IO(ConfigOriginFactory.newSimple(file.toString()), "Failed to open", e);
+            }
+            parsedFingerprint = fingerprint;
+            return parsed;
+        }
+
+        @Override
+        public String fingerprint() {
+            return InputFingerprints.ofFile(file);
+        }
+    }
+
+    /**
+     * Load strategy for a gzip compressed class path resource. The class loader that finds the resource also
+     * finds {@code reference.conf} and the {@code classpath(...)} includes of the document.
+     */
+    static class GzipResourceLoadStrategy extends GzipLoadStrategy {
+
+        private final String resource;
+
+        GzipResourceLoadStrategy(ClassLoader classLoader, String resource, ConfigSyntax syntax) {
+            super(classLoader, syntax);
+            this.resource = requireNonNull(resource, "Argument 'resource' must not be null");
+        }
+
+        @Override
+        Config parse() {
+            final InputStream in = classLoader().getResourceAsStream(resource);
+            if (in == null) {
+                throw new ConfigException.IO(ConfigOriginFactory.newSimple(resource), "Resource not found");
+            }
+            return parse(in, resource);
+        }
+
+        @Override
+        public String fingerprint() {
+            return InputFingerprints.ofResource(classLoader(), resource);
+        }
+    }
+
+    /**
+     * Load strategy for a gzip compressed document behind a URL. HTTP requests are conditional: the parsed
+     * document is reused when the server answers that it has not been modified since the last load, so an
+     * unchanged document is neither downloaded nor decompressed again. Documents that the server compresses
+     * in transit, with {@code Content-Encoding: gzip}, are decompressed as well. Connecting and every read
+     * are bounded by the timeout, so a server that hangs fails the load instead of blocking it.
+     */
+    static class GzipUrlLoadStrategy extends GzipLoadStrategy {
+
+        private final URL url;
+        private final int timeoutMillis;
+        private String entityTag;
+        private long lastModified;
+        private Config parsed;
+
+        GzipUrlLoadStrategy(URL url, ConfigSyntax syntax, int timeoutMillis) {
+            super(null, syntax);
+            this.url = requireNonNull(url, "Argument 'url' must not be null");
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        synchronized Config parse() {
+            final String description = url.toString();
+            URLConnection connection = null;
+            try {
+                connection = url.openConnection();
+                connection.setConnectTimeout(timeoutMillis);
+                connection.setReadTimeout(timeoutMillis);
+                if (connection instanceof HttpURLConnection) {
+                    connection.setRequestProperty("Accept-Encoding", "gzip");
+                    if (parsed != null && entityTag != null) {
+                        connection.setRequestProperty("If-None-Match", entityTag);
+                    } else if (parsed != null && lastModified > 0) {
+                        connection.setIfModifiedSince(lastModified);
+                    }
+                    if (((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED
+                            && parsed != null) {
+                        // Closing the empty body hands the connection back for keep-alive
+                        connection.getInputStream().close();
+                        return parsed;
+                    }
+                }
+
+                parsed = parse(connection.getInputStream(), description);
+                entityTag = connection.getHeaderField("ETag");
+                lastModified = connection.getLastModified();
+                return parsed;
+            } catch (IOException e) {
+                if (connection instanceof HttpURLConnection) {
+                    ((HttpURLConnection) connection).disconnect();
+                }
+                throw new ConfigException.IO(ConfigOriginFactory.newSimple(description), "Failed to load", e);
+            }
+        }
+
+        @Override
+        public String fingerprint() {
+            return InputFingerprints.ofUrl(url);
+        }
+    }
+}
@@ -1,10 +1,36 @@
 package com.wixia.common.config;
 
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigRenderOptions;
 import org.cfg4j.source.ConfigurationSource;
 import org.cfg4j.source.context.environment.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static java.util.Objects.requireNonNull;
 
@@ -15,10 +41,31 @@ import static java.util.Objects.requireNonNull;
  */
 public class LightbendConfigurationSource implements ConfigurationSource {
 
+    private static final Logger LOG = LoggerFactory.getLogger(LightbendConfigurationSource.class);
+
     private final ConfigFactoryHandler configFactoryHandler;
-    private Config lightbendConfig;
+    private final KeyAccessStatistics accessStatistics;
+    private final List<ConfigValidator> validators;
+    private final BoundedLoader boundedLoader;
+    private final Path snapshotCacheFile;
+    private final long memoryBudget;
+    private final ForkJoinPool flatteningPool;
+    private final List<ConfigSnapshotListener> listeners = new CopyOnWriteArrayList<>();
+    // Events are queued while publishing and delivered after the lock is released, by one thread at a time
+    private final Queue<Consumer<ConfigSnapshotListener>> pendingEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    private volatile ConfigSnapshot snapshot;
+    // Set when this source joins a group, which then reloads it and decides which snapshot is served
+    private volatile LightbendConfigurationSourceGroup group;
+
+    private volatile boolean initialized;
+
+    private volatile Throwable lastFailure;
+    private volatile String rejectedFingerprint;
 
-    private boolean initialized;
+    // Loads are numbered when they start, so that a slow load can not replace the result of a later one
+    private final AtomicLong loadSequence = new AtomicLong();
+    private long appliedLoad;
 
     /**
      * Note: use {@link LightbendConfigurationSourceBuilder} for building instances of this class.
@@ -30,13 +77,33 @@ public class LightbendConfigurationSource implements ConfigurationSource {
      *                             with creating the load strategy
      */
     LightbendConfigurationSource(ConfigFactoryHandler configFactoryHandler) {
+        this(configFactoryHandler, SourceOptions.defaults());
+    }
+
+    /**
+     * Like {@link #LightbendConfigurationSource(ConfigFactoryHandler)} but with optional features enabled.
+     *
+     * @param configFactoryHandler {@link LightbendConfigFactoryHandler} the handler class that helps
+     *                             with creating the load strategy
+     * @param options              the optional features to enable
+     */
+    LightbendConfigurationSource(ConfigFactoryHandler configFactoryHandler, SourceOptions options) {
         this.configFactoryHandler = requireNonNull(configFactoryHandler, "Argument 'configFactoryHandler' must not be null");
+        requireNonNull(options, "Argument 'options' must not be null");
+        this.accessStatistics = options.getAccessStatistics();
+        this.validators = new ArrayList<>(options.getValidators());
+        this.boundedLoader = options.getLoadTimeout() != null ? new BoundedLoader(options.getLoadTimeout()) : null;
+        this.snapshotCacheFile = options.getSnapshotCacheFile();
+        this.memoryBudget = options.getMemoryBudget();
+        this.flatteningPool = options.getFlatteningPool();
         init();
     }
 
     /**
-     * (Re)loads the configuration ({@link Config}) using Lightbend, and converts it to a
-     * local {@link Properties} object.
+     * (Re)loads the configuration ({@link Config}) using Lightbend, and copies the flattened entries of the
+     * current {@link ConfigSnapshot} to a local {@link Properties} object. A member of a
+     * {@link LightbendConfigurationSourceGroup} is not reloaded, its snapshot in the group's current
+     * generation is served instead.
      *
      * @param environment {@link org.cfg4j.source.context.environment.Environment} not used
      * @return the populated {@link Properties} object
@@ -48,30 +115,428 @@ public class LightbendConfigurationSource implements ConfigurationSource {
                     "Configuration source has to be successfully initialized before you request configuration.");
         }
 
-        reload();
+        if (group == null) {
+            reload();
+        }
 
-        Properties config = new Properties();
-        lightbendConfig.entrySet().stream().forEach(entry -> config.put(entry.getKey(), entry.getValue().unwrapped()));
+        Properties config = accessStatistics != null ? new AccessCountingProperties(accessStatistics) : new Properties();
+        config.putAll(getSnapshot().getEntries());
 
         return config;
     }
 
     /**
      * Use the {@link LightbendConfigFactoryHandler#init()} to create a
-     * Lightbend {@link Config} object, which is cached.
+     * Lightbend {@link Config} object, which is validated and published as a new {@link ConfigSnapshot}.
+     * As there is no earlier configuration to fall back to, a failure is thrown to the caller, except when
+     * the load times out and a snapshot cache file is set, see
+     * {@link LightbendConfigurationSourceBuilder#withSnapshotCacheFile(String)}.
+     * A member of a {@link LightbendConfigurationSourceGroup} reloads the whole group instead.
      */
     @Override
     public void init() {
-        lightbendConfig = configFactoryHandler.init();
+        final LightbendConfigurationSourceGroup group = this.group;
+        if (group != null) {
+            group.reload();
+            return;
+        }
+        try {
+            initAlone();
+        } finally {
+            deliverEvents();
+        }
+    }
+
+    private synchronized void initAlone() {
+        final long load = loadSequence.incrementAndGet();
+        Config candidate;
+        ConfigLoadTimeoutException timeout = null;
+        try {
+            candidate = loadValidated(configFactoryHandler::init);
+        } catch (ConfigLoadTimeoutException e) {
+            candidate = loadSnapshotCache(e);
+            timeout = e;
+        } catch (RuntimeException e) {
+            lastFailure = e;
+            throw e;
+        }
+
+        accept(load, candidate);
         initialized = true;
+        if (timeout != null) {
+            // Started from the cached copy, report the timeout so the next reload is known to be needed
+            reject(load, null, timeout);
+        }
     }
 
     /**
      * Use the {@link LightbendConfigFactoryHandler#reload()} to create a
-     * Lightbend {@link Config} object, which is cached.
+     * Lightbend {@link Config} object, which is validated and published as a new {@link ConfigSnapshot}
+     * if its content differs from the current one.
+     * <p>
+     * If loading or validation fails, the candidate is rejected and the current snapshot keeps being served,
+     * see {@link #getLastFailure()}. When the input can be identified, the same rejected input is not loaded
+     * again until it has changed. Loads that time out are tried again on the next reload. When reloads
+     * overlap, the result of a load that started before the last applied one is dropped.
+     * A member of a {@link LightbendConfigurationSourceGroup} reloads the whole group instead.
      */
     @Override
     public void reload() {
-        lightbendConfig = configFactoryHandler.reload();
+        final LightbendConfigurationSourceGroup group = this.group;
+        if (group != null) {
+            group.reload();
+            return;
+        }
+        if (!initialized) {
+            init();
+            return;
+        }
+
+        final Candidate candidate = loadCandidate();
+        if (candidate != null) {
+            apply(candidate);
+        }
+    }
+
+    /**
+     * The first half of {@link #reload()}: load and validate a new configuration without publishing it.
+     *
+     * @return the loaded configuration or the reason it was rejected, or null if the input is known to be
+     * rejected already
+     */
+    Candidate loadCandidate() {
+        final String fingerprint = configFactoryHandler.fingerprint();
+        if (fingerprint != null && fingerprint.equals(rejectedFingerprint)) {
+            return null;
+        }
+
+        final long load = loadSequence.incrementAndGet();
+        try {
+            return new Candidate(load, fingerprint, loadValidated(configFactoryHandler::reload), null);
+        } catch (ConfigLoadTimeoutException e) {
+            return new Candidate(load, null, null, e);
+        } catch (RuntimeException e) {
+            return new Candidate(load, fingerprint, null, e);
+        }
+    }
+
+    /**
+     * The second half of {@link #reload()}: publish a loaded configuration, or reject it.
+     *
+     * @param candidate the result of {@link #loadCandidate()}
+     */
+    void apply(Candidate candidate) {
+        try {
+            publish(candidate);
+        } finally {
+            deliverEvents();
+        }
+    }
+
+    /**
+     * Like {@link #apply(Candidate)}, but leave the listener calls queued until {@link #deliverEvents()}, so
+     * that a group can serve the new snapshot first.
+     *
+     * @param candidate the result of {@link #loadCandidate()}
+     */
+    void publish(Candidate candidate) {
+        if (candidate.failure != null) {
+            reject(candidate.load, candidate.fingerprint, candidate.failure);
+        } else {
+            accept(candidate.load, candidate.config);
+        }
+    }
+
+    /**
+     * @return why the latest load was rejected, or null if it succeeded
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @return the current snapshot, its version only changes when the content of the configuration changes.
+     * For a member of a {@link LightbendConfigurationSourceGroup}, the snapshot in the group's current generation
+     */
+    public ConfigSnapshot getSnapshot() {
+        if (!initialized) {
+            throw new IllegalStateException(
+                    "Configuration source has to be successfully initialized before you request configuration.");
+        }
+        final LightbendConfigurationSourceGroup group = this.group;
+        return group != null ? group.getGeneration().getSnapshot(this) : snapshot;
+    }
+
+    /**
+     * @return the snapshot this source published last, which for a group member may not be served yet
+     */
+    ConfigSnapshot getPublishedSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Hand reloading and serving over to {@code group}.
+     *
+     * @param group the group this source is a member of
+     * @throws IllegalStateException if this source is not initialized or already in a group
+     */
+    synchronized void joinGroup(LightbendConfigurationSourceGroup group) {
+        checkCanJoinGroup();
+        this.group = group;
+    }
+
+    /**
+     * @throws IllegalStateException if this source is not initialized or already in a group
+     */
+    synchronized void checkCanJoinGroup() {
+        if (!initialized) {
+            throw new IllegalStateException("Configuration source has to be successfully initialized before it joins a group.");
+        }
+        if (this.group != null) {
+            throw new IllegalStateException("Configuration source is already a member of a group.");
+        }
+    }
+
+    /**
+     * Get the current, resolved Lightbend {@link Config}. This is the same configuration that is served
+     * through {@link #getConfiguration(Environment)}, without flattening it to {@link Properties} and
+     * without reloading it.
+     *
+     * @return the {@link Config} of the current snapshot
+     */
+    public Config getConfig() {
+        return getSnapshot().getConfig();
+    }
+
+    /**
+     * Estimate how much heap the current snapshot retains, see {@link ConfigFootprint}.
+     *
+     * @return the footprint of the current snapshot
+     */
+    public ConfigFootprint getFootprint() {
+        return getSnapshot().getFootprint();
+    }
+
+    /**
+     * Subscribe to snapshots with changed content, published by {@link #init()} and {@link #reload()}.
+     * Listeners are called after the new snapshot is served, without holding the lock of this source, so they
+     * may read from and reload the source. An exception thrown by a listener is logged, it does not affect
+     * the load or the other listeners.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(ConfigSnapshotListener listener) {
+        listeners.add(requireNonNull(listener, "Argument 'listener' must not be null"));
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeListener(ConfigSnapshotListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Bind {@code type} directly to the current snapshot, see {@link LightbendConfigBinder}.
+     *
+     * @param prefix the path that the methods of {@code type} are relative to, empty for the root
+     * @param type   the interface to bind
+     * @param <T>    the interface type
+     * @return an instance of {@code type} that follows the snapshots of this source
+     */
+    public <T> T bind(String prefix, Class<T> type) {
+        return LightbendConfigBinder.bind(this, prefix, type);
+    }
+
+    private Config loadValidated(Supplier<Config> load) {
+        if (boundedLoader == null) {
+            return validate(load.get());
+        }
+        return boundedLoader.load(() -> validate(load.get()));
+    }
+
+    private Config validate(Config candidate) {
+        final Config resolved = candidate.isResolved() ? candidate : candidate.resolve();
+        for (ConfigValidator validator : validators) {
+            validator.validate(resolved);
+        }
+        if (memoryBudget > 0) {
+            final ConfigFootprint footprint = ConfigFootprint.of(resolved);
+            if (footprint.getTotalBytes() > memoryBudget) {
+                throw new ConfigMemoryBudgetException(footprint, memoryBudget);
+            }
+        }
+        return resolved;
+    }
+
+    private synchronized void accept(long load, Config candidate) {
+        if (load < appliedLoad) {
+            return;
+        }
+        appliedLoad = load;
+        lastFailure = null;
+        rejectedFingerprint = null;
+        publish(candidate);
+    }
+
+    private synchronized void reject(long load, String fingerprint, RuntimeException cause) {
+        if (load < appliedLoad) {
+            return;
+        }
+        appliedLoad = load;
+        lastFailure = cause;
+        rejectedFingerprint = fingerprint;
+        pendingEvents.add(listener -> listener.onRejected(cause));
+    }
+
+    /**
+     * Replace the current snapshot with one for {@code config}, unless the content is unchanged.
+     * Synchronized so that versions are handed out in publishing order.
+     */
+    private synchronized void publish(Config config) {
+        final ConfigSnapshot current = snapshot;
+        if (current != null && current.getConfig() == config) {
+            // Lightbend Config caches some loads, the same instance can not have changed
+            return;
+        }
+
+        final ConfigSnapshot candidate = new ConfigSnapshot(
+                current == null ? 1 : current.getVersion() + 1, config, flatten(config, flatteningPool));
+
+        if (current == null || !current.hasSameContent(candidate)) {
+            snapshot = candidate;
+            writeSnapshotCache(config);
+            pendingEvents.add(listener -> listener.onSnapshot(candidate));
+        }
+    }
+
+    /**
+     * Call the listeners with the queued events, in the order they were queued. If another thread is already
+     * doing so, it picks up the events of this thread as well.
+     */
+    void deliverEvents() {
+        while (!pendingEvents.isEmpty() && delivering.compareAndSet(false, true)) {
+            try {
+                Consumer<ConfigSnapshotListener> event;
+                while ((event = pendingEvents.poll()) != null) {
+                    for (ConfigSnapshotListener listener : listeners) {
+                        try {
+                            event.accept(listener);
+                        } catch (RuntimeException e) {
+                            LOG.warn("Configuration snapshot listener {} failed", listener, e);
+                        }
+                    }
+                }
+            } finally {
+                delivering.set(false);
+            }
+        }
+    }
+
+    private Config loadSnapshotCache(ConfigLoadTimeoutException timeout) {
+        if (snapshotCacheFile == null || !Files.isReadable(snapshotCacheFile)) {
+            lastFailure = timeout;
+            throw timeout;
+        }
+        try {
+            return validate(ConfigFactory.parseFile(snapshotCacheFile.toFile(),
+                    ConfigParseOptions.defaults().setAllowMissing(false)));
+        } catch (ConfigException e) {
+            timeout.addSuppressed(e);
+            lastFailure = timeout;
+            throw timeout;
+        }
+    }
+
+    /**
+     * Write the resolved configuration, which can hold secrets from system properties and environment
+     * variables, to a file that only its owner can read.
+     */
+    private void writeSnapshotCache(Config config) {
+        if (snapshotCacheFile == null) {
+            return;
+        }
+        Path temporary = null;
+        try {
+            final Path directory = snapshotCacheFile.toAbsolutePath().getParent();
+            temporary = directory.getFileSystem().supportedFileAttributeViews().contains("posix")
+                    ? Files.createTempFile(directory, snapshotCacheFile.getFileName().toString(), ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                    : Files.createTempFile(directory, snapshotCacheFile.getFileName().toString(), ".tmp");
+            Files.write(temporary, config.root().render(ConfigRenderOptions.concise()).getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, snapshotCacheFile,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The cache is only a fallback for slow starts, failing to write it must not fail the load
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    // Nothing more to do about a temporary file that can not be deleted
+                }
+            }
+        }
+    }
+
+    static Map<String, Object> flatten(Config config) {
+        final Map<String, Object> entries = new HashMap<>();
+        config.entrySet().forEach(entry -> entries.put(entry.getKey(), entry.getValue().unwrapped()));
+        return entries;
+    }
+
+    /**
+     * Like {@link #flatten(Config)}, with the top level subtrees flattened in parallel on {@code pool}.
+     * The entries of a subtree are the entries of the whole configuration below its key, so the result is
+     * the same as the sequential one.
+     *
+     * @param config the configuration to flatten
+     * @param pool   the pool to flatten on, or null to flatten sequentially
+     * @return the flattened, unwrapped entries
+     */
+    static Map<String, Object> flatten(Config config, ForkJoinPool pool) {
+        final ConfigObject root = config.root();
+        if (pool == null || root == null || root.size() < 2) {
+            return flatten(config);
+        }
+
+        return pool.submit(() -> root.keySet().parallelStream()
+                .flatMap(key -> root.withOnlyKey(key).toConfig().entrySet().stream())
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().unwrapped(),
+                        (first, second) -> first, HashMap::new)))
+                .join();
+    }
+
+    /**
+     * Report the most read keys, and the keys of the current configuration that have never been read.
+     * Requires access statistics to be enabled with
+     * {@link LightbendConfigurationSourceBuilder#withAccessStatistics(int)}.
+     *
+     * @param hotKeyLimit the maximum number of hot keys in the report
+     * @return a new {@link KeyAccessReport}
+     */
+    public KeyAccessReport getAccessReport(int hotKeyLimit) {
+        if (accessStatistics == null) {
+            throw new IllegalStateException("Access statistics are not enabled for this configuration source.");
+        }
+
+        return accessStatistics.report(hotKeyLimit, getSnapshot().getEntries().keySet());
+    }
+
+    /**
+     * A configuration loaded by {@link #loadCandidate()}, or the reason it could not be loaded.
+     */
+    static final class Candidate {
+        final long load;
+        final String fingerprint;
+        final Config config;
+        final RuntimeException failure;
+
+        Candidate(long load, String fingerprint, Config config, RuntimeException failure) {
+            this.load = load;
+            this.fingerprint = fingerprint;
+            this.config = config;
+            this.failure = failure;
+        }
     }
 }
@@ -3,6 +3,18 @@ package com.wixia.common.config;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigParseOptions;
 import com.typesafe.config.ConfigResolveOptions;
+import com.typesafe.config.ConfigSyntax;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * Builder for {@link LightbendConfigurationSource}. It initializes and keeps the
@@ -10,12 +22,23 @@ import com.typesafe.config.ConfigResolveOptions;
  */
 public class LightbendConfigurationSourceBuilder {
 
+    private static final int CONFIG_DAEMON_TIMEOUT_MILLIS = 1000;
+    private static final int COMPRESSED_URL_TIMEOUT_MILLIS = 10000;
+
     // These variables control how the load strategy is chosen
     private String resourceBasename;
     private ClassLoader classLoader;
     private Config customConfig;
     private ConfigResolveOptions configResolveOptions;
     private ConfigParseOptions configParseOptions;
+    private String streamingConfigFile;
+    private String compressedConfigFile;
+    private String compressedConfigResource;
+    private String compressedConfigUrl;
+    private boolean sharedParseCache;
+    private ConfigOverlays frozenOverlays;
+    private int configDaemonPort = -1;
+    private String configDaemonTokenFile;
 
     // These variables controls whether to use a system property or not
     private String systemPropertyKey;
@@ -23,6 +46,18 @@ public class LightbendConfigurationSourceBuilder {
 
     // A prefix that can be used or not
     private String prefix;
+    private boolean prefixScopedLoading;
+
+    // Receives a substitution profile of every load when set
+    private Consumer<SubstitutionProfile> substitutionProfileConsumer;
+
+    // Optional features of the built source, 0 means access statistics are disabled
+    private int accessStatisticsSamplingInterval;
+    private final List<ConfigValidator> validators = new ArrayList<>();
+    private Duration loadTimeout;
+    private String snapshotCacheFile;
+    private long memoryBudget;
+    private ForkJoinPool flatteningPool;
 
     /**
      * Build a {@link LightbendConfigurationSource} using this builder's configuration parameters.
@@ -36,7 +71,13 @@ public class LightbendConfigurationSourceBuilder {
         if (isSystemPropertySet()) {
             configFactoryHandler.withSystemProperty(systemPropertyKey, systemPropertyValue);
         }
-        return new LightbendConfigurationSource(configFactoryHandler);
+        if (substitutionProfileConsumer != null) {
+            configFactoryHandler.withSubstitutionProfiling(substitutionProfileConsumer);
+        }
+        if (prefixScopedLoading) {
+            configFactoryHandler.withPrefixScopedLoading();
+        }
+        return new LightbendConfigurationSource(configFactoryHandler, createSourceOptions());
     }
 
     /**
@@ -126,6 +167,18 @@ public class LightbendConfigurationSourceBuilder {
         return this;
     }
 
+    /**
+     * Only resolve the part of the configuration that the prefix needs: the subtree at the prefix and the
+     * paths its substitutions depend on. Unrelated subtrees are neither resolved nor flattened, and are
+     * left out of the served configuration. Requires {@link #withPrefix(String)}.
+     *
+     * @return this builder with prefix scoped loading enabled
+     */
+    public LightbendConfigurationSourceBuilder withPrefixScopedLoading() {
+        this.prefixScopedLoading = true;
+        return this;
+    }
+
     /**
      * Sets the URL that the configuration gets loaded from, using Lightbend Config's
      * way of directing load source, using system properties
@@ -174,6 +227,255 @@ public class LightbendConfigurationSourceBuilder {
         return this;
     }
 
+    /**
+     * Sets a large, flat or shallowly nested JSON or properties file that the configuration gets loaded from
+     * with a streaming reader, instead of building Lightbend Config's syntax tree for the whole document.
+     * The syntax is chosen from the file extension, {@code .json} or {@code .properties}, optionally followed
+     * by {@code .gz} for a gzip compressed file.
+     * <p>
+     * Substitutions, includes and comments are not supported in files loaded this way.
+     *
+     * @param streamingConfigFile the file pointer to a JSON or properties file
+     * @return this builder initialised to stream configuration from a file
+     */
+    public LightbendConfigurationSourceBuilder withStreamingConfigFile(String streamingConfigFile) {
+        this.streamingConfigFile = streamingConfigFile;
+        return this;
+    }
+
+    /**
+     * Sets a gzip compressed file that the configuration gets loaded from. It is decompressed in a stream
+     * straight into the parser, and parsed again only when its size or modification time changes. The syntax
+     * is chosen from the file extension without {@code .gz}: {@code .json}, {@code .properties} or HOCON.
+     *
+     * @param compressedConfigFile the file pointer to a compressed configuration
+     * @return this builder initialised to load configuration from a compressed file
+     */
+    public LightbendConfigurationSourceBuilder withCompressedConfigFile(String compressedConfigFile) {
+        this.compressedConfigFile = compressedConfigFile;
+        return this;
+    }
+
+    /**
+     * Like {@link #withCompressedConfigFile(String)} for a class path resource, found with the class loader
+     * set with {@link #withClassLoader(ClassLoader)} or the context class loader.
+     *
+     * @param compressedConfigResource the name of a compressed configuration resource
+     * @return this builder initialised to load configuration from a compressed resource
+     */
+    public LightbendConfigurationSourceBuilder withCompressedConfigResource(String compressedConfigResource) {
+        this.compressedConfigResource = compressedConfigResource;
+        return this;
+    }
+
+    /**
+     * Like {@link #withCompressedConfigFile(String)} for a URL. HTTP reloads are conditional requests, so an
+     * unchanged document is neither downloaded nor parsed again. Connecting and reading time out after ten
+     * seconds.
+     *
+     * @param compressedConfigUrl the URL pointing to a compressed configuration
+     * @return this builder initialised to load configuration from a compressed URL
+     */
+    public LightbendConfigurationSourceBuilder withCompressedConfigUrl(String compressedConfigUrl) {
+        this.compressedConfigUrl = compressedConfigUrl;
+        return this;
+    }
+
+    /**
+     * Count how often each key is read from the built source, see
+     * {@link LightbendConfigurationSource#getAccessReport(int)}.
+     *
+     * @param samplingInterval record about one in {@code samplingInterval} reads, 1 records every read
+     * @return this builder with access statistics enabled
+     */
+    public LightbendConfigurationSourceBuilder withAccessStatistics(int samplingInterval) {
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException("Argument 'samplingInterval' must be at least 1");
+        }
+        this.accessStatisticsSamplingInterval = samplingInterval;
+        return this;
+    }
+
+    /**
+     * Validate every loaded configuration before it is published. A configuration that fails validation is
+     * rejected and the last good configuration keeps being served. Validators run in the order they are added.
+     *
+     * @param validator the validator to add
+     * @return this builder with {@code validator} added
+     */
+    public LightbendConfigurationSourceBuilder withValidator(ConfigValidator validator) {
+        validators.add(requireNonNull(validator, "Argument 'validator' must not be null"));
+        return this;
+    }
+
+    /**
+     * Check every loaded configuration against a reference configuration before it is published, using
+     * {@link Config#checkValid(Config, String...)}.
+     *
+     * @param reference       the reference configuration
+     * @param restrictToPaths only check these paths, or all paths of {@code reference} if none are given
+     * @return this builder with the reference check added as a validator
+     */
+    public LightbendConfigurationSourceBuilder withReferenceConfig(Config reference, String... restrictToPaths) {
+        requireNonNull(reference, "Argument 'reference' must not be null");
+        return withValidator(config -> config.checkValid(reference, restrictToPaths));
+    }
+
+    /**
+     * Diagnose slow substitutions: after every load, the configuration is loaded again without resolving it,
+     * and the cost of resolving each value with substitutions is measured, see {@link SubstitutionProfiler}.
+     * This roughly doubles the cost of each load and is not meant to be left on.
+     *
+     * @param consumer receives the {@link SubstitutionProfile} of every load
+     * @return this builder with substitution profiling enabled
+     */
+    public LightbendConfigurationSourceBuilder withSubstitutionProfiling(Consumer<SubstitutionProfile> consumer) {
+        this.substitutionProfileConsumer = requireNonNull(consumer, "Argument 'consumer' must not be null");
+        return this;
+    }
+
+    /**
+     * Parse configuration documents, including every reference.conf, through the process wide
+     * {@link SharedParseCache}, so that documents shared between sources and class loaders are parsed once
+     * and reparsed only when their content changes. This works with any combination of class loader,
+     * resource basename, custom config, parse options and resolve options.
+     *
+     * @return this builder with the shared parse cache enabled
+     */
+    public LightbendConfigurationSourceBuilder withSharedParseCache() {
+        this.sharedParseCache = true;
+        return this;
+    }
+
+    /**
+     * Parse the system property and environment variable overrides once and reuse them for every reload,
+     * instead of taking them from Lightbend Config's cache, which is dropped by
+     * {@link com.typesafe.config.ConfigFactory#invalidateCaches()}. Call {@link ConfigOverlays#refresh()} to pick
+     * up changed system properties. Like {@link #withSharedParseCache()}, this works with any combination of
+     * class loader, resource basename, custom config, parse options and resolve options.
+     *
+     * @param overlays the overlays to use, which can be shared with other sources
+     * @return this builder with frozen overlays
+     */
+    public LightbendConfigurationSourceBuilder withFrozenOverlays(ConfigOverlays overlays) {
+        this.frozenOverlays = requireNonNull(overlays, "Argument 'overlays' must not be null");
+        return this;
+    }
+
+    /**
+     * Like {@link #withFrozenOverlays(ConfigOverlays)} with overlays that are not shared with other sources.
+     *
+     * @return this builder with frozen overlays
+     */
+    public LightbendConfigurationSourceBuilder withFrozenOverlays() {
+        return withFrozenOverlays(new ConfigOverlays());
+    }
+
+    /**
+     * Bound the time that {@code init()} and {@code reload()} wait for the configuration to be loaded, parsed,
+     * resolved and validated. Lightbend Config does all of these in one call, so the deadline covers them
+     * together. A load that misses the deadline is cancelled and reported as a
+     * {@link ConfigLoadTimeoutException}, see {@link LightbendConfigurationSource#getLastFailure()} and
+     * {@link ConfigSnapshotListener#onRejected(Throwable)}, while the last good snapshot keeps being served.
+     *
+     * @param timeout the deadline for each load
+     * @return this builder with bounded load time
+     */
+    public LightbendConfigurationSourceBuilder withLoadTimeout(Duration timeout) {
+        requireNonNull(timeout, "Argument 'timeout' must not be null");
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Argument 'timeout' must be positive");
+        }
+        this.loadTimeout = timeout;
+        return this;
+    }
+
+    /**
+     * Keep a copy of the latest published configuration in {@code snapshotCacheFile}, rendered as JSON, and
+     * start from it when the first load times out, see {@link #withLoadTimeout(Duration)}. The copy holds the
+     * whole resolved configuration, including system properties and environment variables. It is written
+     * readable by its owner only where the file system supports POSIX permissions, elsewhere keep it where
+     * only the application can read it.
+     *
+     * @param snapshotCacheFile the file to keep the copy in
+     * @return this builder with a snapshot cache file
+     */
+    public LightbendConfigurationSourceBuilder withSnapshotCacheFile(String snapshotCacheFile) {
+        this.snapshotCacheFile = requireNonNull(snapshotCacheFile, "Argument 'snapshotCacheFile' must not be null");
+        return this;
+    }
+
+    /**
+     * Fetch the resolved configuration from a {@link LocalConfigDaemon} on this host instead of parsing and
+     * resolving it in this process. The rest of the builder's settings choose how the configuration is loaded
+     * when the daemon can not be reached, or can not prove that it knows the secret in the default token file
+     * for {@code port}, see {@link LocalConfigDaemon#defaultTokenFile(int)}. A prefix is applied to the fetched
+     * configuration as usual. The fetched configuration holds the daemon's system properties and environment
+     * variables, not those of this process.
+     *
+     * @param port the port the daemon listens on
+     * @return this builder initialised to fetch configuration from a local daemon
+     */
+    public LightbendConfigurationSourceBuilder withConfigDaemon(int port) {
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("Argument 'port' must be a valid port number");
+        }
+        this.configDaemonPort = port;
+        return this;
+    }
+
+    /**
+     * Like {@link #withConfigDaemon(int)}, with the secret of the daemon in {@code tokenFile}.
+     *
+     * @param port      the port the daemon listens on
+     * @param tokenFile the token file the daemon was started with
+     * @return this builder initialised to fetch configuration from a local daemon
+     */
+    public LightbendConfigurationSourceBuilder withConfigDaemon(int port, String tokenFile) {
+        this.configDaemonTokenFile = requireNonNull(tokenFile, "Argument 'tokenFile' must not be null");
+        return withConfigDaemon(port);
+    }
+
+    /**
+     * Reject configurations whose estimated heap footprint, the Lightbend {@link Config} tree and the flattened
+     * snapshot together, exceeds {@code budgetBytes}, see {@link ConfigFootprint}. An oversized reload is
+     * reported as a {@link ConfigMemoryBudgetException} to {@link ConfigSnapshotListener#onRejected(Throwable)}
+     * and the last good snapshot keeps being served; an oversized first load fails {@code build()}.
+     *
+     * @param budgetBytes the largest accepted footprint in bytes
+     * @return this builder with a memory budget
+     */
+    public LightbendConfigurationSourceBuilder withMemoryBudget(long budgetBytes) {
+        if (budgetBytes < 1) {
+            throw new IllegalArgumentException("Argument 'budgetBytes' must be positive");
+        }
+        this.memoryBudget = budgetBytes;
+        return this;
+    }
+
+    /**
+     * Flatten large configurations in parallel on the common fork join pool, one task per top level key,
+     * see {@link #withParallelFlattening(ForkJoinPool)}.
+     *
+     * @return this builder with parallel flattening enabled
+     */
+    public LightbendConfigurationSourceBuilder withParallelFlattening() {
+        return withParallelFlattening(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Flatten every loaded configuration into the entries of its {@link ConfigSnapshot} in parallel on
+     * {@code pool}, one task per top level key. The entries are the same as when flattening sequentially;
+     * this pays off for configurations with hundreds of thousands of values spread over several top level keys.
+     *
+     * @param pool the pool to flatten on
+     * @return this builder with parallel flattening enabled
+     */
+    public LightbendConfigurationSourceBuilder withParallelFlattening(ForkJoinPool pool) {
+        this.flatteningPool = requireNonNull(pool, "Argument 'pool' must not be null");
+        return this;
+    }
+
     public String getResourceBasename() {
         return resourceBasename;
     }
@@ -214,6 +516,38 @@ public class LightbendConfigurationSourceBuilder {
         this.configParseOptions = configParseOptions;
     }
 
+    public String getStreamingConfigFile() {
+        return streamingConfigFile;
+    }
+
+    public void setStreamingConfigFile(String streamingConfigFile) {
+        this.streamingConfigFile = streamingConfigFile;
+    }
+
+    public String getCompressedConfigFile() {
+        return compressedConfigFile;
+    }
+
+    public void setCompressedConfigFile(String compressedConfigFile) {
+        this.compressedConfigFile = compressedConfigFile;
+    }
+
+    public String getCompressedConfigResource() {
+        return compressedConfigResource;
+    }
+
+    public void setCompressedConfigResource(String compressedConfigResource) {
+        this.compressedConfigResource = compressedConfigResource;
+    }
+
+    public String getCompressedConfigUrl() {
+        return compressedConfigUrl;
+    }
+
+    public void setCompressedConfigUrl(String compressedConfigUrl) {
+        this.compressedConfigUrl = compressedConfigUrl;
+    }
+
     public String getPrefix() {
         return prefix;
     }
@@ -242,14 +576,85 @@ public class LightbendConfigurationSourceBuilder {
         return configParseOptions != null;
     }
 
+    public boolean isStreamingConfigFileSet() {
+        return streamingConfigFile != null;
+    }
+
+    public boolean isCompressedConfigFileSet() {
+        return compressedConfigFile != null;
+    }
+
+    public boolean isCompressedConfigResourceSet() {
+        return compressedConfigResource != null;
+    }
+
+    public boolean isCompressedConfigUrlSet() {
+        return compressedConfigUrl != null;
+    }
+
+    public boolean isSharedParseCacheSet() {
+        return sharedParseCache;
+    }
+
+    public boolean isPrefixScopedLoadingSet() {
+        return prefixScopedLoading;
+    }
+
+    public boolean isConfigDaemonSet() {
+        return configDaemonPort > 0;
+    }
+
+    public boolean isFrozenOverlaysSet() {
+        return frozenOverlays != null;
+    }
+
     public boolean isSystemPropertySet() { return systemPropertyKey != null; }
 
+    public boolean isAccessStatisticsSet() {
+        return accessStatisticsSamplingInterval > 0;
+    }
+
+    public boolean isLoadTimeoutSet() {
+        return loadTimeout != null;
+    }
+
+    public boolean isSnapshotCacheFileSet() {
+        return snapshotCacheFile != null;
+    }
+
+    public boolean isMemoryBudgetSet() {
+        return memoryBudget > 0;
+    }
+
+    public boolean isParallelFlatteningSet() {
+        return flatteningPool != null;
+    }
+
     @Override
     public String toString() {
         return String.format(
-                "%s {resourceBasename=%s, classLoader=%s, customConfig=%s, configResolveOptions=%s, configParseOptions=%s}",
+                "%s {resourceBasename=%s, classLoader=%s, customConfig=%s, configResolveOptions=%s, configParseOptions=%s, "
+                        + "streamingConfigFile=%s, compressedConfigFile=%s, compressedConfigResource=%s, "
+                        + "compressedConfigUrl=%s, sharedParseCache=%s, frozenOverlays=%s}",
                 this.getClass().getName(),
-                resourceBasename, classLoader, customConfig, configResolveOptions, configParseOptions);
+                resourceBasename, classLoader, customConfig, configResolveOptions, configParseOptions,
+                streamingConfigFile, compressedConfigFile, compressedConfigResource, compressedConfigUrl,
+                sharedParseCache, isFrozenOverlaysSet());
+    }
+
+    SourceOptions createSourceOptions() {
+        final SourceOptions options = SourceOptions.defaults();
+        if (isAccessStatisticsSet()) {
+            options.withAccessStatistics(new KeyAccessStatistics(accessStatisticsSamplingInterval));
+        }
+        validators.forEach(options::withValidator);
+        options.withLoadTimeout(loadTimeout);
+        options.withMemoryBudget(memoryBudget);
+        options.withFlatteningPool(flatteningPool);
+        if (isSnapshotCacheFileSet()) {
+            options.withSnapshotCacheFile(Paths.get(snapshotCacheFile));
+        }
+        return options;
     }
 
     /**
@@ -262,6 +667,23 @@ public class LightbendConfigurationSourceBuilder {
      * @return the load strategy for the parameters that are set currently
      */
     LightbendLoadStrategy createLoadStrategy() {
+        final LightbendLoadStrategy localLoadStrategy = createLocalLoadStrategy();
+        if (isConfigDaemonSet()) {
+            return new LightbendConfigFactoryHandler.DaemonLoadStrategy(configDaemonPort,
+                    configDaemonTokenFile != null ? Paths.get(configDaemonTokenFile) : null,
+                    CONFIG_DAEMON_TIMEOUT_MILLIS, localLoadStrategy);
+        }
+        return localLoadStrategy;
+    }
+
+    private LightbendLoadStrategy createLocalLoadStrategy() {
+        if ((isSharedParseCacheSet() || isFrozenOverlaysSet()) && !isStreamingConfigFileSet()
+                && !isCompressedConfigFileSet() && !isCompressedConfigResourceSet() && !isCompressedConfigUrlSet()) {
+            return new LightbendConfigFactoryHandler.ComposedLoadStrategy(
+                    classLoader, resourceBasename, customConfig, configParseOptions, configResolveOptions,
+                    isSharedParseCacheSet() ? SharedParseCache.getInstance() : null, frozenOverlays);
+        }
+
         StrategyType type = createStrategyType();
 
         if (type == null) {
@@ -332,6 +754,27 @@ public class LightbendConfigurationSourceBuilder {
                 loadStrategy = new LightbendConfigFactoryHandler.ResourceBasenameParseOptionsResolveOptionsLoadStrategy(
                         resourceBasename, configParseOptions, configResolveOptions);
                 break;
+            case STREAMINGFILE:
+                loadStrategy = new LightbendConfigFactoryHandler.StreamingFileLoadStrategy(
+                        Paths.get(streamingConfigFile), streamingSyntaxOf(streamingConfigFile));
+                break;
+            case COMPRESSEDFILE:
+                loadStrategy = new LightbendConfigFactoryHandler.GzipFileLoadStrategy(
+                        Paths.get(compressedConfigFile), compressedSyntaxOf(compressedConfigFile));
+                break;
+            case COMPRESSEDRESOURCE:
+                loadStrategy = new LightbendConfigFactoryHandler.GzipResourceLoadStrategy(
+                        null, compressedConfigResource, compressedSyntaxOf(compressedConfigResource));
+                break;
+            case CLASSLOADERCOMPRESSEDRESOURCE:
+                loadStrategy = new LightbendConfigFactoryHandler.GzipResourceLoadStrategy(
+                        classLoader, compressedConfigResource, compressedSyntaxOf(compressedConfigResource));
+                break;
+            case COMPRESSEDURL:
+                loadStrategy = new LightbendConfigFactoryHandler.GzipUrlLoadStrategy(
+                        toUrl(compressedConfigUrl), compressedSyntaxOf(compressedConfigUrl),
+                        COMPRESSED_URL_TIMEOUT_MILLIS);
+                break;
             default:
                 throw new IllegalStateException(
                         String.format(
@@ -341,18 +784,59 @@ public class LightbendConfigurationSourceBuilder {
         return loadStrategy;
     }
 
+    private static ConfigSyntax streamingSyntaxOf(String file) {
+        final String name = withoutGzipExtension(file.toLowerCase());
+        if (name.endsWith(".json")) {
+            return ConfigSyntax.JSON;
+        } else if (name.endsWith(".properties")) {
+            return ConfigSyntax.PROPERTIES;
+        }
+        throw new IllegalStateException(
+                String.format("Streaming is only supported for .json and .properties files, not %s", file));
+    }
+
+    private static ConfigSyntax compressedSyntaxOf(String name) {
+        final String uncompressed = withoutGzipExtension(name.toLowerCase());
+        if (uncompressed.endsWith(".json")) {
+            return ConfigSyntax.JSON;
+        } else if (uncompressed.endsWith(".properties")) {
+            return ConfigSyntax.PROPERTIES;
+        }
+        return ConfigSyntax.CONF;
+    }
+
+    private static String withoutGzipExtension(String name) {
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    private static URL toUrl(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(String.format("Invalid compressed configuration URL %s", url), e);
+        }
+    }
+
     public StrategyType createStrategyType() {
         int result = Flags.DEFAULT.getSetWeight(!(
                 isResourceBasenameSet()
                         || isClassLoaderSet()
                         || isCustomConfigSet()
                         || isConfigResolveOptionsSet()
-                        || isConfigParseOptionsSet()));
+                        || isConfigParseOptionsSet()
+                        || isStreamingConfigFileSet()
+                        || isCompressedConfigFileSet()
+                        || isCompressedConfigResourceSet()
+                        || isCompressedConfigUrlSet()));
         result += Flags.RESOURCEBASENAME.getSetWeight(isResourceBasenameSet());
         result += Flags.CLASSLOADER.getSetWeight(isClassLoaderSet());
         result += Flags.CUSTOMCONFIG.getSetWeight(isCustomConfigSet());
         result += Flags.CONFIGRESOLVEOPTIONS.getSetWeight(isConfigResolveOptionsSet());
         result += Flags.CONFIGPARSEOPTIONS.getSetWeight(isConfigParseOptionsSet());
+        result += Flags.STREAMINGFILE.getSetWeight(isStreamingConfigFileSet());
+        result += Flags.COMPRESSEDFILE.getSetWeight(isCompressedConfigFileSet());
+        result += Flags.COMPRESSEDRESOURCE.getSetWeight(isCompressedConfigResourceSet());
+        result += Flags.COMPRESSEDURL.getSetWeight(isCompressedConfigUrlSet());
 
         return StrategyType.typeOf(result);
     }
@@ -363,7 +847,11 @@ public class LightbendConfigurationSourceBuilder {
         CLASSLOADER(2),
         CUSTOMCONFIG(3),
         CONFIGRESOLVEOPTIONS(4),
-        CONFIGPARSEOPTIONS(5);
+        CONFIGPARSEOPTIONS(5),
+        STREAMINGFILE(6),
+        COMPRESSEDFILE(7),
+        COMPRESSEDRESOURCE(8),
+        COMPRESSEDURL(9);
 
         final int weight;
 
@@ -393,6 +881,11 @@ public class LightbendConfigurationSourceBuilder {
         PARSEOPTIONSRESOLVEOPTIONS(Flags.CONFIGPARSEOPTIONS.weight + Flags.CONFIGRESOLVEOPTIONS.weight),
         RESOURCEBASENAME(Flags.RESOURCEBASENAME.weight),
         RESOURCEBASENAMEPARSEOPTIONSRESOLVEOPTIONS(Flags.RESOURCEBASENAME.weight + Flags.CONFIGPARSEOPTIONS.weight + Flags.CONFIGRESOLVEOPTIONS.weight),
+        STREAMINGFILE(Flags.STREAMINGFILE.weight),
+        COMPRESSEDFILE(Flags.COMPRESSEDFILE.weight),
+        COMPRESSEDRESOURCE(Flags.COMPRESSEDRESOURCE.weight),
+        CLASSLOADERCOMPRESSEDRESOURCE(Flags.CLASSLOADER.weight + Flags.COMPRESSEDRESOURCE.weight),
+        COMPRESSEDURL(Flags.COMPRESSEDURL.weight),
         ;
 
         final int typeValue;
@@ -0,0 +1,215 @@
+package com.wixia.common.config;
+
+import org.cfg4j.source.reload.Reloadable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reloads a group of {@link LightbendConfigurationSource} instances together, so that readers that use more
+ * than one of them, for example service configuration and a routing table, see a consistent combination.
+ * <p>
+ * The members are loaded and validated in parallel. If all of them succeed, their snapshots are published
+ * and collected in a new {@link Generation}, which replaces the previous one in a single volatile write. If
+ * any of them fails, or its input is unchanged since it last failed, nothing is published, the failed members
+ * report their failure as usual and the current generation stays.
+ * <p>
+ * Once in a group, members no longer reload themselves: {@code init()} and {@code reload()} of a member
+ * reload the whole group, {@code getConfiguration()} does not reload at all, and every read of a member,
+ * including bound interfaces, serves its snapshot in the current generation. Register the group rather than
+ * its members with a reload strategy. Listeners of a member are called once the generation that holds the
+ * new snapshot is served, so they read the new snapshot from any member. Loads run with the context class
+ * loader of the thread that reloads the group.
+ */
+public class LightbendConfigurationSourceGroup implements Reloadable {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "lightbend-config-group");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<LightbendConfigurationSource> members;
+    private volatile Generation generation;
+    private volatile Throwable lastFailure;
+
+    /**
+     * @param members the sources to reload together, already initialized and not in another group
+     * @throws IllegalStateException if a member is not initialized, already in a group or given twice, in
+     *                               which case none of the members joins this group
+     */
+    public LightbendConfigurationSourceGroup(LightbendConfigurationSource... members) {
+        requireNonNull(members, "Argument 'members' must not be null");
+        final List<LightbendConfigurationSource> list = new ArrayList<>(members.length);
+        final Set<LightbendConfigurationSource> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (LightbendConfigurationSource member : members) {
+            list.add(requireNonNull(member, "Group members must not be null"));
+            if (!distinct.add(member)) {
+                throw new IllegalStateException("Configuration source is given more than once.");
+            }
+            member.checkCanJoinGroup();
+        }
+        this.members = Collections.unmodifiableList(list);
+        this.generation = new Generation(1, snapshotsOf(this.members));
+        for (LightbendConfigurationSource member : this.members) {
+            member.joinGroup(this);
+        }
+    }
+
+    /**
+     * Load all members in parallel and publish their new snapshots as one generation, or none of them if
+     * any member fails.
+     */
+    @Override
+    public synchronized void reload() {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final List<CompletableFuture<LightbendConfigurationSource.Candidate>> loads = new ArrayList<>(members.size());
+        for (LightbendConfigurationSource member : members) {
+            loads.add(CompletableFuture.supplyAsync(() -> {
+                final Thread thread = Thread.currentThread();
+                final ClassLoader pooled = thread.getContextClassLoader();
+                thread.setContextClassLoader(contextClassLoader);
+                try {
+                    return member.loadCandidate();
+                } finally {
+                    thread.setContextClassLoader(pooled);
+                }
+            }, EXECUTOR));
+        }
+
+        final List<LightbendConfigurationSource.Candidate> candidates = new ArrayList<>(members.size());
+        Throwable failure = null;
+        for (int i = 0; i < members.size(); i++) {
+            final LightbendConfigurationSource.Candidate candidate = loads.get(i).join();
+            candidates.add(candidate);
+            if (failure == null) {
+                // No candidate means the member's input is unchanged since it was last rejected
+                failure = candidate != null ? candidate.failure : members.get(i).getLastFailure();
+            }
+        }
+
+        try {
+            publish(candidates, failure);
+        } finally {
+            for (LightbendConfigurationSource member : members) {
+                member.deliverEvents();
+            }
+        }
+    }
+
+    /**
+     * Publish the candidates, or only their failures if {@code failure} is set, and serve the new snapshots
+     * as the next generation. The listeners of the members are called afterwards.
+     */
+    private void publish(List<LightbendConfigurationSource.Candidate> candidates, Throwable failure) {
+        if (failure != null) {
+            for (int i = 0; i < members.size(); i++) {
+                final LightbendConfigurationSource.Candidate candidate = candidates.get(i);
+                if (candidate != null && candidate.failure != null) {
+                    members.get(i).publish(candidate);
+                }
+            }
+            lastFailure = failure;
+            return;
+        }
+
+        for (int i = 0; i < members.size(); i++) {
+            if (candidates.get(i) != null) {
+                members.get(i).publish(candidates.get(i));
+            }
+        }
+        lastFailure = null;
+
+        final Generation current = generation;
+        final List<ConfigSnapshot> snapshots = snapshotsOf(members);
+        if (!snapshots.equals(current.snapshots)) {
+            generation = new Generation(current.number + 1, snapshots);
+        }
+    }
+
+    /**
+     * @return the current generation, a consistent set of snapshots of all members
+     */
+    public Generation getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return why the latest reload of the group was not published, or null if it was
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @return the members of this group, in the order they were given
+     */
+    public List<LightbendConfigurationSource> getMembers() {
+        return members;
+    }
+
+    private static List<ConfigSnapshot> snapshotsOf(List<LightbendConfigurationSource> members) {
+        final List<ConfigSnapshot> snapshots = new ArrayList<>(members.size());
+        for (LightbendConfigurationSource member : members) {
+            snapshots.add(member.getPublishedSnapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * The snapshots of all members of a group, published together.
+     */
+    public final class Generation {
+        private final long number;
+        private final List<ConfigSnapshot> snapshots;
+        private final Map<LightbendConfigurationSource, ConfigSnapshot> byMember = new IdentityHashMap<>();
+
+        Generation(long number, List<ConfigSnapshot> snapshots) {
+            this.number = number;
+            this.snapshots = Collections.unmodifiableList(snapshots);
+            for (int i = 0; i < members.size(); i++) {
+                byMember.put(members.get(i), snapshots.get(i));
+            }
+        }
+
+        /**
+         * @return the number of this generation, increased every time a member's snapshot changes
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * @return the snapshots of the members, in the order of {@link #getMembers()}
+         */
+        public List<ConfigSnapshot> getSnapshots() {
+            return snapshots;
+        }
+
+        /**
+         * @param member a member of the group
+         * @return the snapshot of {@code member} in this generation
+         */
+        public ConfigSnapshot getSnapshot(LightbendConfigurationSource member) {
+            final ConfigSnapshot snapshot = byMember.get(member);
+            if (snapshot == null) {
+                throw new IllegalArgumentException("The source is not a member of this group");
+            }
+            return snapshot;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s {number=%d, snapshots=%s}", this.getClass().getName(), number, snapshots);
+        }
+    }
+}
@@ -1,7 +1,38 @@
 package com.wixia.common.config;
 
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigResolveOptions;
 
 public interface LightbendLoadStrategy {
     Config load();
+
+    /**
+     * Assemble the same configuration as {@link #load()}, but without resolving substitutions, for
+     * diagnostics that need to see them. Strategies that can not do that return the resolved configuration.
+     *
+     * @return the unresolved configuration
+     */
+    default Config loadUnresolved() {
+        return load();
+    }
+
+    /**
+     * The options that {@link #load()} resolves substitutions with, for callers that resolve the result of
+     * {@link #loadUnresolved()} themselves.
+     *
+     * @return the resolve options of this strategy
+     */
+    default ConfigResolveOptions resolveOptions() {
+        return ConfigResolveOptions.defaults();
+    }
+
+    /**
+     * Identify the input of the next {@link #load()} without reading it, so that input that is known to be
+     * broken does not have to be parsed again.
+     *
+     * @return an identifier that changes when the input changes, or null if the input can not be identified
+     */
+    default String fingerprint() {
+        return null;
+    }
 }
@@ -0,0 +1,420 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigRenderOptions;
+import com.typesafe.config.ConfigSyntax;
+import com.typesafe.config.ConfigValue;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Serves the snapshots of a {@link LightbendConfigurationSource} to other processes on the same host, so that
+ * the configuration is parsed and resolved once per host instead of once per process.
+ * <p>
+ * The daemon listens on the loopback interface only. Clients are sources built with
+ * {@link LightbendConfigurationSourceBuilder#withConfigDaemon(int)}; they send the version they already have
+ * and receive nothing if it is current, the top level paths that changed if the daemon still remembers their
+ * version, or the whole resolved configuration otherwise. The daemon remembers the last few snapshots the
+ * source published. It does not reload by itself, reload the source it serves as usual, for example with a
+ * {@link SharedReloadScheduler}.
+ * <p>
+ * Daemon and clients authenticate each other with a random secret that the daemon writes to a token file,
+ * by default {@code ~/.lightbend-config-daemon/<port>.token}. The file is created readable by its owner only,
+ * and clients refuse a token file that is owned by another user or readable by others, so only processes of
+ * the same user can fetch the configuration or pose as the daemon. The secret itself is never sent, only
+ * HMAC-SHA256 tags over a random challenge. On file systems without POSIX permissions, the token file is
+ * protected only by the permissions of its directory.
+ * <p>
+ * Clients receive the configuration as the daemon resolved it, including the daemon's system properties and
+ * environment variables, not their own.
+ */
+public class LocalConfigDaemon implements AutoCloseable {
+
+    static final int UNCHANGED = 0;
+    static final int FULL = 1;
+    static final int DELTA = 2;
+
+    static final int MAX_DOCUMENT_BYTES = 64 * 1024 * 1024;
+
+    private static final int HISTORY = 8;
+    private static final int CLIENT_TIMEOUT_MILLIS = 5000;
+    private static final int TOKEN_BYTES = 32;
+    private static final int NONCE_BYTES = 16;
+    private static final int TAG_BYTES = 32;
+    private static final String HMAC = "HmacSHA256";
+    private static final ConfigRenderOptions RENDER_OPTIONS = ConfigRenderOptions.concise();
+
+    private final LightbendConfigurationSource source;
+    private final String instance = UUID.randomUUID().toString();
+    private final ServerSocket serverSocket;
+    private final Path tokenFile;
+    private final byte[] token;
+    private final ConfigSnapshotListener listener = this::remember;
+    private final ExecutorService executor;
+    private final Map<Long, ConfigObject> history = new LinkedHashMap<>();
+
+    /**
+     * Start serving {@code source} on {@code port} of the loopback interface, with the secret in the default
+     * token file for the port, see {@link #defaultTokenFile(int)}.
+     *
+     * @param source the source to serve
+     * @param port   the port to listen on
+     * @throws IOException if the port can not be bound or the token file can not be written
+     */
+    public LocalConfigDaemon(LightbendConfigurationSource source, int port) throws IOException {
+        this(source, port, null);
+    }
+
+    /**
+     * Start serving {@code source} on {@code port} of the loopback interface.
+     *
+     * @param source    the source to serve
+     * @param port      the port to listen on, 0 for any free port, see {@link #getPort()}
+     * @param tokenFile the file to write the secret to, replaced if it exists, or null for the default
+     *                  token file for the port
+     * @throws IOException if the port can not be bound or the token file can not be written
+     */
+    public LocalConfigDaemon(LightbendConfigurationSource source, int port, Path tokenFile) throws IOException {
+        this.source = requireNonNull(source, "Argument 'source' must not be null");
+        this.serverSocket = new ServerSocket();
+        try {
+            this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            this.tokenFile = tokenFile != null ? tokenFile : defaultTokenFile(serverSocket.getLocalPort());
+            this.token = new byte[TOKEN_BYTES];
+            new SecureRandom().nextBytes(token);
+            writeTokenFile(this.tokenFile, token);
+        } catch (IOException | RuntimeException e) {
+            serverSocket.close();
+            throw e;
+        }
+
+        remember(source.getSnapshot());
+        source.addListener(listener);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "lightbend-config-daemon");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.execute(this::accept);
+    }
+
+    /**
+     * @param port the port of the daemon
+     * @return {@code ~/.lightbend-config-daemon/<port>.token}
+     */
+    public static Path defaultTokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".lightbend-config-daemon", port + ".token");
+    }
+
+    /**
+     * @return the port the daemon listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stop serving. Clients fall back to loading the configuration themselves.
+     */
+    @Override
+    public void close() throws IOException {
+        source.removeListener(listener);
+        serverSocket.close();
+        executor.shutdownNow();
+        Files.deleteIfExists(tokenFile);
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                try {
+                    executor.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    // Closed while accepting, the client falls back to loading the configuration itself
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // Closed, or a client that went away while connecting
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket client = socket) {
+            client.setSoTimeout(CLIENT_TIMEOUT_MILLIS);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+
+            final byte[] nonce = new byte[NONCE_BYTES];
+            final byte[] tag = new byte[TAG_BYTES];
+            in.readFully(nonce);
+            in.readFully(tag);
+            if (!MessageDigest.isEqual(tag, tag(token, "client", nonce))) {
+                // Not a client of this daemon, tell it nothing
+                return;
+            }
+            out.write(tag(token, "daemon", nonce));
+
+            final String knownInstance = in.readUTF();
+            final long knownVersion = in.readLong();
+
+            final ConfigSnapshot snapshot = source.getSnapshot();
+            final ConfigObject current = snapshot.getConfig().root();
+            final ConfigObject known = instance.equals(knownInstance) ? known(knownVersion) : null;
+
+            out.writeUTF(instance);
+            out.writeLong(snapshot.getVersion());
+            if (instance.equals(knownInstance) && knownVersion == snapshot.getVersion()) {
+                out.writeByte(UNCHANGED);
+            } else if (known != null) {
+                writeDelta(out, known, current);
+            } else {
+                out.writeByte(FULL);
+                writeDocument(out, current);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client went away or timed out, it falls back to loading the configuration itself
+        }
+    }
+
+    /**
+     * Record a published snapshot, so that clients that have it can be sent a delta.
+     */
+    private synchronized void remember(ConfigSnapshot snapshot) {
+        history.putIfAbsent(snapshot.getVersion(), snapshot.getConfig().root());
+        final Iterator<Long> oldest = history.keySet().iterator();
+        while (history.size() > HISTORY) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private synchronized ConfigObject known(long version) {
+        return history.get(version);
+    }
+
+    private static void writeDelta(DataOutputStream out, ConfigObject known, ConfigObject current) throws IOException {
+        ConfigObject changed = ConfigFactory.empty().root();
+        for (Map.Entry<String, ConfigValue> entry : current.entrySet()) {
+            if (!entry.getValue().equals(known.get(entry.getKey()))) {
+                changed = changed.withValue(entry.getKey(), entry.getValue());
+            }
+        }
+        final List<String> removed = new ArrayList<>();
+        for (String key : known.keySet()) {
+            if (!current.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+
+        out.writeByte(DELTA);
+        writeDocument(out, changed);
+        out.writeInt(removed.size());
+        for (String key : removed) {
+            out.writeUTF(key);
+        }
+    }
+
+    private static void writeDocument(DataOutputStream out, ConfigObject document) throws IOException {
+        final byte[] bytes = document.render(RENDER_OPTIONS).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_DOCUMENT_BYTES) {
+            throw new IOException("Configuration of " + bytes.length + " bytes is too large to serve");
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * What a client has received from a daemon.
+     */
+    static final class Received {
+        final String instance;
+        final long version;
+        final Config config;
+
+        Received(String instance, long version, Config config) {
+            this.instance = instance;
+            this.version = version;
+            this.config = config;
+        }
+    }
+
+    /**
+     * Fetch the current snapshot of the daemon on {@code port}.
+     *
+     * @param port          the port of the daemon
+     * @param tokenFile     the token file of the daemon
+     * @param timeoutMillis the connect and read timeout
+     * @param known         what was received before, or null
+     * @return {@code known} if it is still current, or the current snapshot
+     * @throws IOException if the daemon can not be reached, or can not prove that it knows the secret
+     */
+    static Received fetch(int port, Path tokenFile, int timeoutMillis, Received known) throws IOException {
+        final byte[] token = readTokenFile(tokenFile);
+        final byte[] nonce = new byte[NONCE_BYTES];
+        new SecureRandom().nextBytes(nonce);
+
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            out.write(nonce);
+            out.write(tag(token, "client", nonce));
+            out.writeUTF(known != null ? known.instance : "");
+            out.writeLong(known != null ? known.version : 0);
+            out.flush();
+
+            final byte[] tag = new byte[TAG_BYTES];
+            in.readFully(tag);
+            if (!MessageDigest.isEqual(tag, tag(token, "daemon", nonce))) {
+                throw new IOException("Port " + port + " is not served by the config daemon of " + tokenFile);
+            }
+
+            final String instance = in.readUTF();
+            final long version = in.readLong();
+            final String description = String.format("config daemon on port %d, version %d", port, version);
+            switch (in.readByte()) {
+                case UNCHANGED:
+                    return known;
+                case FULL:
+                    return new Received(instance, version, readDocument(in, description));
+                case DELTA:
+                    if (known == null) {
+                        throw new IOException("Unexpected delta from " + description);
+                    }
+                    ConfigObject root = known.config.root();
+                    final ConfigObject changed = readDocument(in, description).root();
+                    for (Map.Entry<String, ConfigValue> entry : changed.entrySet()) {
+                        root = root.withValue(entry.getKey(), entry.getValue());
+                    }
+                    final int removed = in.readInt();
+                    if (removed < 0 || removed > known.config.root().size()) {
+                        throw new IOException("Invalid number of removed paths " + removed + " from " + description);
+                    }
+                    for (int i = removed; i > 0; i--) {
+                        root = root.withoutKey(in.readUTF());
+                    }
+                    return new Received(instance, version, root.toConfig());
+                default:
+                    throw new IOException("Unknown response from " + description);
+            }
+        }
+    }
+
+    static Config readDocument(DataInputStream in, String description) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_DOCUMENT_BYTES) {
+            throw new IOException("Invalid document length " + length + " from " + description);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return ConfigFactory.parseString(new String(bytes, StandardCharsets.UTF_8),
+                ConfigParseOptions.defaults().setSyntax(ConfigSyntax.JSON).setOriginDescription(description));
+    }
+
+    private static byte[] tag(byte[] token, String role, byte[] nonce) {
+        try {
+            final Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(token, HMAC));
+            mac.update(role.getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC + " is not available", e);
+        }
+    }
+
+    /**
+     * Write {@code token} to a new file that only its owner can read, and move it into place in one step.
+     */
+    private static void writeTokenFile(Path tokenFile, byte[] token) throws IOException {
+        final Path directory = tokenFile.toAbsolutePath().getParent();
+        if (!Files.isDirectory(directory)) {
+            if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.createDirectories(directory,
+                        PosixFilePermissions.asFileAttribute(EnumSet.of(PosixFilePermission.OWNER_READ,
+                                PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE)));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+
+        // Temporary files are created readable and writable by their owner only
+        final Path temporary = Files.createTempFile(directory, tokenFile.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, token);
+            Files.move(temporary, tokenFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Read the secret from {@code tokenFile}, if it belongs to the current user and nobody else can read it.
+     */
+    static byte[] readTokenFile(Path tokenFile) throws IOException {
+        final PosixFileAttributeView view = Files.getFileAttributeView(tokenFile, PosixFileAttributeView.class);
+        if (view != null) {
+            final UserPrincipal owner = view.getOwner();
+            final UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!owner.equals(user)) {
+                throw new IOException(tokenFile + " is owned by " + owner.getName() + ", not by " + user.getName());
+            }
+            final EnumSet<PosixFilePermission> others = EnumSet.of(
+                    PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_WRITE,
+                    PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_WRITE);
+            others.retainAll(view.readAttributes().permissions());
+            if (!others.isEmpty()) {
+                throw new IOException(tokenFile + " is accessible to other users");
+            }
+        }
+
+        final byte[] token = Files.readAllBytes(tokenFile);
+        if (token.length != TOKEN_BYTES) {
+            throw new IOException(tokenFile + " does not hold a config daemon token");
+        }
+        return token;
+    }
+}
@@ -0,0 +1,492 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigIncludeContext;
+import com.typesafe.config.ConfigIncluder;
+import com.typesafe.config.ConfigIncluderClasspath;
+import com.typesafe.config.ConfigIncluderFile;
+import com.typesafe.config.ConfigIncluderURL;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigOriginFactory;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigSyntax;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A process wide cache of parsed, unresolved configuration documents, shared by all sources and class loaders.
+ * <p>
+ * Documents are cached by URL and syntax, and an entry is only used while the SHA-256 hash of the document,
+ * and of every document it includes, is unchanged. A {@code reference.conf} in a jar that is visible to many
+ * class loaders is therefore parsed once, where Lightbend Config caches the reference configuration for the
+ * most recently used class loader only. Documents that include {@code classpath(...)} resources are cached
+ * per class loader, because what they include depends on it. Checking a cached document costs a read of its
+ * bytes, not a parse, and a document is parsed from the bytes that were hashed.
+ * <p>
+ * All includes go through the cache as well. Heuristic includes such as {@code include "other.conf"} are
+ * looked up next to the including document, like Lightbend Config does, and, unless the including document
+ * is a remote URL, on the class path if there is no such document.
+ */
+public class SharedParseCache {
+
+    private static final SharedParseCache INSTANCE = new SharedParseCache();
+    private static final String[] ANY_SYNTAX_EXTENSIONS = {".conf", ".json", ".properties"};
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> classLoaderSensitive = ConcurrentHashMap.newKeySet();
+    private final AtomicLong parses = new AtomicLong();
+    private final ThreadLocal<Deque<Parse>> parsing = ThreadLocal.withInitial(ArrayDeque::new);
+
+    SharedParseCache() {
+    }
+
+    /**
+     * @return the cache shared by the whole process
+     */
+    public static SharedParseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Parse the document at {@code url}, or return the cached result if neither it nor its includes have changed.
+     *
+     * @param url     the document
+     * @param options the parse options, the includer is replaced by one that uses this cache
+     * @return the parsed, unresolved document
+     * @throws ConfigException.IO if the document can not be read, or does not exist and missing documents
+     *                            are not allowed
+     */
+    public Config parseURL(URL url, ConfigParseOptions options) {
+        requireNonNull(url, "Argument 'url' must not be null");
+        requireNonNull(options, "Argument 'options' must not be null");
+
+        final Parse including = parsing.get().peek();
+        final byte[] content = read(url);
+        if (content == null) {
+            if (options.getAllowMissing()) {
+                if (including != null) {
+                    including.dependencies.add(new Dependency(url, null));
+                }
+                return ConfigFactory.empty(url.toExternalForm());
+            }
+            throw new ConfigException.IO(ConfigOriginFactory.newURL(url), "Resource not found");
+        }
+
+        final ClassLoader classLoader = options.getClassLoader() != null
+                ? options.getClassLoader()
+                : LightbendConfigFactoryHandler.contextClassLoader();
+        final String key = url.toExternalForm() + "|" + options.getSyntax();
+        final String hash = hash(content);
+
+        Entry entry = lookup(key, classLoader);
+        if (entry == null || !entry.hash.equals(hash) || !entry.dependenciesUnchanged()) {
+            entry = parse(url, content, hash, options.setClassLoader(classLoader));
+            store(key, entry);
+        }
+
+        if (including != null) {
+            including.dependencies.add(new Dependency(url, hash));
+            including.dependencies.addAll(entry.dependencies);
+            including.classLoaderSensitive |= entry.classLoader != null;
+        }
+        return entry.config;
+    }
+
+    /**
+     * Parse all resources called {@code resource} on the class path of {@code classLoader}, like
+     * {@link ConfigFactory#parseResources(ClassLoader, String, ConfigParseOptions)}. Resources found first win.
+     *
+     * @param classLoader the class loader to find the resources with
+     * @param resource    the resource name
+     * @param options     the parse options
+     * @return the merged, unresolved resources
+     */
+    public Config parseResources(ClassLoader classLoader, String resource, ConfigParseOptions options) {
+        requireNonNull(classLoader, "Argument 'classLoader' must not be null");
+        requireNonNull(resource, "Argument 'resource' must not be null");
+
+        final String name = resource.startsWith("/") ? resource.substring(1) : resource;
+        final ConfigParseOptions resourceOptions = options.getSyntax() == null
+                ? options.setSyntax(syntaxOf(name)) : options;
+
+        Config merged = ConfigFactory.empty(resource);
+        boolean found = false;
+        try {
+            final Enumeration<URL> urls = classLoader.getResources(name);
+            while (urls.hasMoreElements()) {
+                merged = merged.withFallback(parseURL(urls.nextElement(), resourceOptions.setAllowMissing(false)));
+                found = true;
+            }
+        } catch (IOException e) {
+            throw new ConfigException.IO(ConfigOriginFactory.newSimple(resource), "Failed to find resources", e);
+        }
+
+        if (!found && !options.getAllowMissing()) {
+            throw new ConfigException.IO(ConfigOriginFactory.newSimple(resource), "Resource not found on classpath");
+        }
+        return merged;
+    }
+
+    /**
+     * Like {@link ConfigFactory#parseResourcesAnySyntax(ClassLoader, String, ConfigParseOptions)}: without an
+     * extension, {@code basename.conf}, {@code basename.json} and {@code basename.properties} are merged in
+     * that order of precedence.
+     *
+     * @param classLoader the class loader to find the resources with
+     * @param basename    the resource name, optionally without extension
+     * @param options     the parse options
+     * @return the merged, unresolved resources
+     */
+    public Config parseResourcesAnySyntax(ClassLoader classLoader, String basename, ConfigParseOptions options) {
+        if (syntaxOf(basename) != null) {
+            return parseResources(classLoader, basename, options);
+        }
+
+        Config merged = ConfigFactory.empty(basename);
+        for (String extension : ANY_SYNTAX_EXTENSIONS) {
+            merged = merged.withFallback(parseResources(classLoader, basename + extension,
+                    options.setSyntax(null).setAllowMissing(true)));
+        }
+
+        if (merged.root().isEmpty() && !options.getAllowMissing()) {
+            throw new ConfigException.IO(ConfigOriginFactory.newSimple(basename), "No resources found on classpath");
+        }
+        return merged;
+    }
+
+    /**
+     * Like {@link ConfigFactory#defaultReferenceUnresolved(ClassLoader)}, from cached documents.
+     *
+     * @param classLoader the class loader to find reference.conf with
+     * @return the merged, unresolved reference configuration
+     */
+    public Config referenceUnresolved(ClassLoader classLoader) {
+        return parseResources(classLoader, "reference.conf", ConfigParseOptions.defaults().setClassLoader(classLoader));
+    }
+
+    /**
+     * Like {@link ConfigFactory#defaultApplication(ConfigParseOptions)}, from cached documents. The
+     * {@code config.resource}, {@code config.file} and {@code config.url} system properties are honoured.
+     *
+     * @param classLoader the class loader to find the application configuration with
+     * @param options     the parse options
+     * @return the unresolved application configuration
+     */
+    public Config defaultApplication(ClassLoader classLoader, ConfigParseOptions options) {
+        final String resource = System.getProperty("config.resource");
+        final String file = System.getProperty("config.file");
+        final String url = System.getProperty("config.url");
+
+        try {
+            if (resource != null) {
+                return parseResources(classLoader, resource, options.setAllowMissing(false));
+            } else if (file != null) {
+                return parseURL(new File(file).toURI().toURL(), options.setAllowMissing(false));
+            } else if (url != null) {
+                return parseURL(new URL(url), options.setAllowMissing(false));
+            }
+        } catch (MalformedURLException e) {
+            throw new ConfigException.BadValue("config.url", e.getMessage(), e);
+        }
+        return parseResourcesAnySyntax(classLoader, "application", options);
+    }
+
+    /**
+     * An includer that routes explicit includes through this cache. Pass it to
+     * {@link ConfigParseOptions#setIncluder(ConfigIncluder)} when parsing documents outside of the cache.
+     *
+     * @return a new includer
+     */
+    public ConfigIncluder includer() {
+        return new CachingIncluder(null, null);
+    }
+
+    /**
+     * @return the number of documents that have been parsed, rather than served from the cache
+     */
+    public long getParseCount() {
+        return parses.get();
+    }
+
+    /**
+     * @return the number of cached documents
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drop all cached documents.
+     */
+    public void clear() {
+        entries.clear();
+        classLoaderSensitive.clear();
+    }
+
+    private Entry lookup(String key, ClassLoader classLoader) {
+        if (!classLoaderSensitive.contains(key)) {
+            return entries.get(key);
+        }
+        final Entry entry = entries.get(key + "|" + System.identityHashCode(classLoader));
+        return entry != null && entry.classLoader.get() == classLoader ? entry : null;
+    }
+
+    private void store(String key, Entry entry) {
+        final ClassLoader classLoader = entry.classLoader != null ? entry.classLoader.get() : null;
+        if (classLoader != null) {
+            entries.put(key + "|" + System.identityHashCode(classLoader), entry);
+            classLoaderSensitive.add(key);
+        } else {
+            entries.put(key, entry);
+            classLoaderSensitive.remove(key);
+        }
+    }
+
+    /**
+     * Parse {@code content}, the bytes of {@code url} that were hashed, so that the cached result always
+     * matches the hash it is cached under.
+     */
+    private Entry parse(URL url, byte[] content, String hash, ConfigParseOptions options) {
+        final Deque<Parse> stack = parsing.get();
+        final Parse parse = new Parse();
+        stack.push(parse);
+        try {
+            parses.incrementAndGet();
+            final Config config = ConfigFactory.parseReader(
+                    new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8),
+                    options.setSyntax(options.getSyntax() != null ? options.getSyntax() : syntaxOf(url.getPath()))
+                            .setOriginDescription(options.getOriginDescription() != null
+                                    ? options.getOriginDescription() : url.toExternalForm())
+                            .setIncluder(new CachingIncluder(null, url)));
+            return new Entry(hash, config, parse.dependencies,
+                    parse.classLoaderSensitive ? options.getClassLoader() : null);
+        } finally {
+            stack.pop();
+        }
+    }
+
+    private static ConfigSyntax syntaxOf(String name) {
+        if (name.endsWith(".conf")) {
+            return ConfigSyntax.CONF;
+        } else if (name.endsWith(".json")) {
+            return ConfigSyntax.JSON;
+        } else if (name.endsWith(".properties")) {
+            return ConfigSyntax.PROPERTIES;
+        }
+        return null;
+    }
+
+    /**
+     * @return the bytes of {@code url}, or null if it does not exist
+     * @throws ConfigException.IO if {@code url} exists but can not be read
+     */
+    static byte[] read(URL url) {
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return Files.readAllBytes(toPath(url));
+            }
+            try (InputStream in = url.openStream()) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+                return out.toByteArray();
+            }
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            throw new ConfigException.IO(ConfigOriginFactory.newURL(url), "Failed to read", e);
+        }
+    }
+
+    private static Path toPath(URL url) {
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return new File(url.getPath()).toPath();
+        }
+    }
+
+    static String hash(byte[] content) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            final char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * What a document that is being parsed includes.
+     */
+    private static class Parse {
+        final List<Dependency> dependencies = new ArrayList<>();
+        boolean classLoaderSensitive;
+    }
+
+    private static class Entry {
+        final String hash;
+        final Config config;
+        final List<Dependency> dependencies;
+        // The class loader the document was parsed with, if it includes class path resources
+        final WeakReference<ClassLoader> classLoader;
+
+        Entry(String hash, Config config, List<Dependency> dependencies, ClassLoader classLoader) {
+            this.hash = hash;
+            this.config = config;
+            this.dependencies = Collections.unmodifiableList(dependencies);
+            this.classLoader = classLoader != null ? new WeakReference<>(classLoader) : null;
+        }
+
+        boolean dependenciesUnchanged() {
+            for (Dependency dependency : dependencies) {
+                final byte[] content = read(dependency.url);
+                if (!Objects.equals(content != null ? hash(content) : null, dependency.hash)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Dependency {
+        final URL url;
+        // null if the document did not exist
+        final String hash;
+
+        Dependency(URL url, String hash) {
+            this.url = url;
+            this.hash = hash;
+        }
+    }
+
+    private class CachingIncluder implements ConfigIncluder, ConfigIncluderFile, ConfigIncluderURL,
+            ConfigIncluderClasspath {
+        private final ConfigIncluder fallback;
+        // The including document, or null outside of the cache
+        private final URL base;
+
+        CachingIncluder(ConfigIncluder fallback, URL base) {
+            this.fallback = fallback;
+            this.base = base;
+        }
+
+        @Override
+        public ConfigIncluder withFallback(ConfigIncluder fallback) {
+            return this.fallback == fallback ? this : new CachingIncluder(fallback, base);
+        }
+
+        @Override
+        public ConfigObject include(ConfigIncludeContext context, String what) {
+            try {
+                return includeURL(context, new URL(what));
+            } catch (MalformedURLException e) {
+                if (base != null) {
+                    return includeRelative(context, what);
+                }
+                if (fallback == null) {
+                    throw new ConfigException.BugOrBroken("No fallback includer for " + what);
+                }
+                return fallback.include(context, what);
+            }
+        }
+
+        /**
+         * Like a heuristic include in Lightbend Config: {@code what} next to the including document, in any
+         * syntax if it has no extension, or on the class path if there is no such document. The include only
+         * fails for nothing found if the context does not allow missing documents, as for {@code required(...)}.
+         */
+        private ConfigObject includeRelative(ConfigIncludeContext context, String what) {
+            final String[] names = syntaxOf(what) != null ? new String[]{what}
+                    : Arrays.stream(ANY_SYNTAX_EXTENSIONS).map(extension -> what + extension).toArray(String[]::new);
+
+            Config merged = ConfigFactory.empty(what);
+            for (String name : names) {
+                final URL url;
+                try {
+                    url = new File(name).isAbsolute() ? new File(name).toURI().toURL() : new URL(base, name);
+                } catch (MalformedURLException e) {
+                    throw new ConfigException.BadPath(name, e.getMessage(), e);
+                }
+                merged = merged.withFallback(parseURL(url,
+                        context.parseOptions().setSyntax(syntaxOf(name)).setAllowMissing(true)));
+            }
+
+            final String protocol = base.getProtocol();
+            if (merged.root().isEmpty() && ("file".equals(protocol) || "jar".equals(protocol))) {
+                return includeResources(context, what);
+            }
+            if (merged.root().isEmpty() && !context.parseOptions().getAllowMissing()) {
+                throw new ConfigException.IO(ConfigOriginFactory.newSimple(what), "Include not found");
+            }
+            return merged.root();
+        }
+
+        @Override
+        public ConfigObject includeFile(ConfigIncludeContext context, File what) {
+            try {
+                return includeURL(context, what.toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new ConfigException.BadPath(what.toString(), e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public ConfigObject includeURL(ConfigIncludeContext context, URL what) {
+            return parseURL(what, context.parseOptions()).root();
+        }
+
+        @Override
+        public ConfigObject includeResources(ConfigIncludeContext context, String what) {
+            final Parse including = parsing.get().peek();
+            if (including != null) {
+                including.classLoaderSensitive = true;
+            }
+            final ClassLoader classLoader = context.parseOptions().getClassLoader() != null
+                    ? context.parseOptions().getClassLoader()
+                    : LightbendConfigFactoryHandler.contextClassLoader();
+            return parseResourcesAnySyntax(classLoader, what, context.parseOptions()).root();
+        }
+    }
+}
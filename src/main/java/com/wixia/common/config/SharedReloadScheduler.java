@@ -0,0 +1,191 @@
+package com.wixia.common.config;
+
+import org.cfg4j.source.reload.ReloadStrategy;
+import org.cfg4j.source.reload.Reloadable;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link ReloadStrategy} that drives any number of sources from a single daemon thread, as an
+ * alternative to cfg4j's {@link org.cfg4j.source.reload.strategy.PeriodicalReloadStrategy}, which
+ * creates a timer thread per provider.
+ * <p>
+ * Reloads are spread out with jitter, so sources registered at the same time do not fire in lockstep.
+ * For a {@link LightbendConfigurationSource} the interval adapts to how often the configuration changes:
+ * it is multiplied by the backoff factor every time a reload leaves the snapshot version unchanged, up to
+ * the maximum interval, and goes back to the minimum interval after a change. Other reloadables are
+ * reloaded at the minimum interval.
+ * <p>
+ * Register the same instance with every {@link org.cfg4j.provider.ConfigurationProviderBuilder} using
+ * {@code withReloadStrategy}, and call {@link #shutdown()} when it is no longer needed.
+ */
+public class SharedReloadScheduler implements ReloadStrategy {
+
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final double jitter;
+    private final double backoffFactor;
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<Reloadable, Registration> registrations = new ConcurrentHashMap<>();
+
+    /**
+     * Create a scheduler with 10% jitter that doubles the interval of unchanged sources.
+     *
+     * @param minInterval the interval after a change, and for sources whose changes can not be tracked
+     * @param maxInterval the longest interval for sources that keep coming back unchanged
+     */
+    public SharedReloadScheduler(Duration minInterval, Duration maxInterval) {
+        this(minInterval, maxInterval, 0.1, 2.0);
+    }
+
+    /**
+     * @param minInterval   the interval after a change, and for sources whose changes can not be tracked
+     * @param maxInterval   the longest interval for sources that keep coming back unchanged
+     * @param jitter        the fraction, between 0 and 1, that each delay is randomly shortened or lengthened by
+     * @param backoffFactor the factor, at least 1, that the interval grows by after an unchanged reload
+     */
+    public SharedReloadScheduler(Duration minInterval, Duration maxInterval, double jitter, double backoffFactor) {
+        requireNonNull(minInterval, "Argument 'minInterval' must not be null");
+        requireNonNull(maxInterval, "Argument 'maxInterval' must not be null");
+
+        if (minInterval.isNegative() || minInterval.isZero() || maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException("Intervals must be positive and 'maxInterval' not less than 'minInterval'");
+        }
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("Argument 'jitter' must be at least 0 and less than 1");
+        }
+        if (backoffFactor < 1) {
+            throw new IllegalArgumentException("Argument 'backoffFactor' must be at least 1");
+        }
+
+        this.minIntervalNanos = minInterval.toNanos();
+        this.maxIntervalNanos = maxInterval.toNanos();
+        this.jitter = jitter;
+        this.backoffFactor = backoffFactor;
+
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "lightbend-config-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Start reloading {@code reloadable}. The first reload happens at a random point within the minimum
+     * interval.
+     *
+     * @param reloadable the source to reload
+     */
+    @Override
+    public void register(Reloadable reloadable) {
+        requireNonNull(reloadable, "Argument 'reloadable' must not be null");
+
+        final Registration registration = new Registration(reloadable);
+        if (registrations.putIfAbsent(reloadable, registration) == null) {
+            registration.schedule((long) (ThreadLocalRandom.current().nextDouble() * minIntervalNanos));
+        }
+    }
+
+    /**
+     * Stop reloading {@code reloadable}.
+     *
+     * @param reloadable the source to stop reloading
+     */
+    @Override
+    public void deregister(Reloadable reloadable) {
+        final Registration registration = registrations.remove(reloadable);
+        if (registration != null) {
+            registration.cancel();
+        }
+    }
+
+    /**
+     * Stop reloading all sources and terminate the scheduler thread.
+     */
+    public void shutdown() {
+        registrations.clear();
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the number of registered sources
+     */
+    public int size() {
+        return registrations.size();
+    }
+
+    long nextInterval(long intervalNanos, boolean changed) {
+        if (changed) {
+            return minIntervalNanos;
+        }
+        return (long) Math.min(maxIntervalNanos, intervalNanos * backoffFactor);
+    }
+
+    long withJitter(long intervalNanos) {
+        if (jitter == 0) {
+            return intervalNanos;
+        }
+        return (long) (intervalNanos * (1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1)));
+    }
+
+    private static long versionOf(Reloadable reloadable) {
+        return reloadable instanceof LightbendConfigurationSource
+                ? ((LightbendConfigurationSource) reloadable).getSnapshot().getVersion()
+                : -1;
+    }
+
+    private class Registration implements Runnable {
+        private final Reloadable reloadable;
+        private final boolean trackable;
+        private long intervalNanos = minIntervalNanos;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+
+        Registration(Reloadable reloadable) {
+            this.reloadable = reloadable;
+            this.trackable = reloadable instanceof LightbendConfigurationSource;
+        }
+
+        void schedule(long delayNanos) {
+            if (!cancelled && !executor.isShutdown()) {
+                future = executor.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            final ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean changed = false;
+            try {
+                final long before = versionOf(reloadable);
+                reloadable.reload();
+                changed = versionOf(reloadable) != before;
+            } catch (RuntimeException e) {
+                // A failing reload must not stop the reloads of this or any other source,
+                // the source keeps serving its current configuration until the next attempt
+            }
+
+            if (trackable) {
+                intervalNanos = nextInterval(intervalNanos, changed);
+            }
+            schedule(withJitter(intervalNanos));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.wixia.common.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Optional features of a {@link LightbendConfigurationSource}, collected by
+ * {@link LightbendConfigurationSourceBuilder}. Everything is disabled by default.
+ */
+class SourceOptions {
+
+    private KeyAccessStatistics accessStatistics;
+    private final List<ConfigValidator> validators = new ArrayList<>();
+    private Duration loadTimeout;
+    private Path snapshotCacheFile;
+    private long memoryBudget;
+    private ForkJoinPool flatteningPool;
+
+    static SourceOptions defaults() {
+        return new SourceOptions();
+    }
+
+    KeyAccessStatistics getAccessStatistics() {
+        return accessStatistics;
+    }
+
+    SourceOptions withAccessStatistics(KeyAccessStatistics accessStatistics) {
+        this.accessStatistics = accessStatistics;
+        return this;
+    }
+
+    List<ConfigValidator> getValidators() {
+        return validators;
+    }
+
+    SourceOptions withValidator(ConfigValidator validator) {
+        validators.add(validator);
+        return this;
+    }
+
+    Duration getLoadTimeout() {
+        return loadTimeout;
+    }
+
+    SourceOptions withLoadTimeout(Duration loadTimeout) {
+        this.loadTimeout = loadTimeout;
+        return this;
+    }
+
+    Path getSnapshotCacheFile() {
+        return snapshotCacheFile;
+    }
+
+    SourceOptions withSnapshotCacheFile(Path snapshotCacheFile) {
+        this.snapshotCacheFile = snapshotCacheFile;
+        return this;
+    }
+
+    long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    SourceOptions withMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    ForkJoinPool getFlatteningPool() {
+        return flatteningPool;
+    }
+
+    SourceOptions withFlatteningPool(ForkJoinPool flatteningPool) {
+        this.flatteningPool = flatteningPool;
+        return this;
+    }
+}
@@ -0,0 +1,140 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.ConfigUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of {@link SubstitutionProfiler#profile(com.typesafe.config.Config)}.
+ */
+public class SubstitutionProfile {
+
+    private final long totalResolveNanos;
+    private final List<PathProfile> paths;
+
+    SubstitutionProfile(long totalResolveNanos, List<PathProfile> paths) {
+        this.totalResolveNanos = totalResolveNanos;
+        this.paths = Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * @return the time it took to resolve the whole configuration once
+     */
+    public long getTotalResolveNanos() {
+        return totalResolveNanos;
+    }
+
+    /**
+     * @return the profiles of all values with substitutions, in document order
+     */
+    public List<PathProfile> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @param limit the maximum number of paths to return
+     * @return the values that took the longest to resolve, most expensive first
+     */
+    public List<PathProfile> getMostExpensivePaths(int limit) {
+        final List<PathProfile> sorted = new ArrayList<>(paths);
+        sorted.sort(Comparator.comparingLong(PathProfile::getResolveNanos).reversed());
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    /**
+     * Sum up the resolution time of the values below each object, at every level of the configuration.
+     *
+     * @param limit the maximum number of subtrees to return
+     * @return the paths of the most expensive objects and their total resolution time, most expensive first
+     */
+    public Map<String, Long> getMostExpensiveSubtrees(int limit) {
+        final Map<String, Long> totals = new HashMap<>();
+        for (PathProfile path : paths) {
+            final List<String> elements = ConfigUtil.splitPath(path.getPath());
+            for (int i = 1; i < elements.size(); i++) {
+                totals.merge(ConfigUtil.joinPath(elements.subList(0, i)), path.getResolveNanos(), Long::sum);
+            }
+        }
+
+        final Map<String, Long> sorted = new LinkedHashMap<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s {totalResolveMillis=%d, paths=%d, mostExpensivePaths=%s, mostExpensiveSubtrees=%s}",
+                this.getClass().getName(), TimeUnit.NANOSECONDS.toMillis(totalResolveNanos), paths.size(),
+                getMostExpensivePaths(5), getMostExpensiveSubtrees(5));
+    }
+
+    /**
+     * The resolution cost and substitution chain of a single value.
+     */
+    public static class PathProfile {
+        private final String path;
+        private final long resolveNanos;
+        private final int depth;
+        private final Set<String> references;
+
+        PathProfile(String path, long resolveNanos, int depth, Set<String> references) {
+            this.path = path;
+            this.resolveNanos = resolveNanos;
+            this.depth = depth;
+            this.references = Collections.unmodifiableSet(references);
+        }
+
+        /**
+         * @return the path of the value
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the time it took to resolve this value on its own, including the values it depends on
+         */
+        public long getResolveNanos() {
+            return resolveNanos;
+        }
+
+        /**
+         * @return the length of the longest substitution chain starting at this value, 1 if it only refers to
+         * values without substitutions
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the number of distinct paths this value refers to
+         */
+        public int getFanOut() {
+            return references.size();
+        }
+
+        /**
+         * @return the paths this value refers to
+         */
+        public Set<String> getReferences() {
+            return references;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s {resolveMicros=%d, depth=%d, fanOut=%d}",
+                    path, TimeUnit.NANOSECONDS.toMicros(resolveNanos), depth, references.size());
+        }
+    }
+}
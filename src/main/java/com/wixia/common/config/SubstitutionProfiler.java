@@ -0,0 +1,239 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigRenderOptions;
+import com.typesafe.config.ConfigResolveOptions;
+import com.typesafe.config.ConfigUtil;
+import com.typesafe.config.ConfigValue;
+import com.typesafe.config.ConfigValueType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Measures how expensive the {@code ${...}} substitutions of an unresolved configuration are to resolve.
+ * <p>
+ * Lightbend Config has no hooks into its resolver, so every value that contains substitutions is resolved
+ * on its own against the whole configuration and timed. The substitution chains are followed through the
+ * unresolved values to find their depth, the longest chain of values that have to be resolved first, and
+ * their fan-out, the number of distinct paths a value refers to. The results are collected in a
+ * {@link SubstitutionProfile}.
+ */
+public class SubstitutionProfiler {
+
+    private static final Pattern SUBSTITUTION = Pattern.compile("\\$\\{\\??\\s*([^}]+?)\\s*}");
+    private static final ConfigRenderOptions RENDER_OPTIONS = ConfigRenderOptions.concise();
+    private static final ConfigResolveOptions RESOLVE_OPTIONS = ConfigResolveOptions.defaults().setAllowUnresolved(true);
+
+    /**
+     * Profile the resolution of {@code unresolved}.
+     *
+     * @param unresolved the configuration before {@link Config#resolve()}, for example from
+     *                   {@link LightbendLoadStrategy#loadUnresolved()}
+     * @return the profile
+     */
+    public SubstitutionProfile profile(Config unresolved) {
+        requireNonNull(unresolved, "Argument 'unresolved' must not be null");
+
+        final long start = System.nanoTime();
+        unresolved.resolve(RESOLVE_OPTIONS);
+        final long totalNanos = System.nanoTime() - start;
+
+        final Map<String, Set<String>> references = findReferences(unresolved);
+        final Map<String, Integer> depths = depthsOf(references);
+
+        final List<SubstitutionProfile.PathProfile> paths = new ArrayList<>(references.size());
+        for (Map.Entry<String, Set<String>> entry : references.entrySet()) {
+            final String path = entry.getKey();
+            paths.add(new SubstitutionProfile.PathProfile(path, timeResolution(unresolved, path),
+                    depths.get(path), entry.getValue()));
+        }
+
+        return new SubstitutionProfile(totalNanos, paths);
+    }
+
+    /**
+     * Find the values of {@code unresolved} that contain substitutions, and the paths they refer to.
+     *
+     * @param unresolved the configuration before {@link Config#resolve()}
+     * @return the paths of values with substitutions, mapped to the paths that they refer to, in document order
+     */
+    static Map<String, Set<String>> findReferences(Config unresolved) {
+        final Map<String, Set<String>> references = new LinkedHashMap<>();
+        collect(new ArrayList<>(), unresolved.root(), references);
+        return references;
+    }
+
+    /**
+     * Find the paths that the values at or below {@code path} depend on through substitutions, directly or
+     * through other substitutions.
+     *
+     * @param references the references of an unresolved configuration, from {@link #findReferences(Config)}
+     * @param path       the path to start from
+     * @return {@code path} and the paths it depends on
+     */
+    static Set<String> findDependencies(Map<String, Set<String>> references, String path) {
+        final Set<String> dependencies = new LinkedHashSet<>();
+        final List<String> pending = new ArrayList<>();
+        dependencies.add(path);
+        pending.add(path);
+
+        final Map<String, List<String>> elements = new HashMap<>();
+        while (!pending.isEmpty()) {
+            final List<String> needed = elementsOf(pending.remove(pending.size() - 1), elements);
+            for (Map.Entry<String, Set<String>> entry : references.entrySet()) {
+                if (!overlaps(elementsOf(entry.getKey(), elements), needed)) {
+                    continue;
+                }
+                for (String referred : entry.getValue()) {
+                    if (dependencies.add(referred)) {
+                        pending.add(referred);
+                    }
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Whether {@code path} is {@code ancestor} or below it. Paths are compared by element, so {@code foobar} is
+     * not below {@code foo}, and {@code "foo".bar} is the same path as {@code foo.bar}.
+     *
+     * @param path     a path expression
+     * @param ancestor another path expression
+     * @return true if all elements of {@code ancestor} start {@code path}
+     */
+    static boolean isWithin(String path, String ancestor) {
+        return startsWith(ConfigUtil.splitPath(path), ConfigUtil.splitPath(ancestor));
+    }
+
+    private static boolean overlaps(List<String> path, List<String> other) {
+        return startsWith(path, other) || startsWith(other, path);
+    }
+
+    private static boolean startsWith(List<String> path, List<String> prefix) {
+        return path.size() >= prefix.size() && path.subList(0, prefix.size()).equals(prefix);
+    }
+
+    private static List<String> elementsOf(String path, Map<String, List<String>> elements) {
+        return elements.computeIfAbsent(path, ConfigUtil::splitPath);
+    }
+
+    private static void collect(List<String> path, ConfigValue value, Map<String, Set<String>> references) {
+        try {
+            if (value.valueType() == ConfigValueType.OBJECT) {
+                for (Map.Entry<String, ConfigValue> child : ((ConfigObject) value).entrySet()) {
+                    path.add(child.getKey());
+                    collect(path, child.getValue(), references);
+                    path.remove(path.size() - 1);
+                }
+                return;
+            }
+            value.unwrapped();
+        } catch (ConfigException.NotResolved e) {
+            final Set<String> referred = new LinkedHashSet<>();
+            final Matcher matcher = SUBSTITUTION.matcher(value.render(RENDER_OPTIONS));
+            while (matcher.find()) {
+                referred.add(matcher.group(1));
+            }
+            references.put(ConfigUtil.joinPath(path), referred);
+        }
+    }
+
+    private static long timeResolution(Config unresolved, String path) {
+        final long start = System.nanoTime();
+        try {
+            unresolved.withOnlyPath(path).resolveWith(unresolved, RESOLVE_OPTIONS);
+        } catch (ConfigException e) {
+            // Unresolvable values are reported by the regular load, the time spent is still relevant
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The depth of a value is one more than the deepest unresolved value it refers to, either directly, through
+     * an object that contains it, or through a value that the referred path is inside of. The values are indexed
+     * by their path and the paths of the objects that contain them first, so that every value is visited once.
+     * Cycles are cut, Lightbend Config reports them when resolving.
+     *
+     * @param references the references of an unresolved configuration, from {@link #findReferences(Config)}
+     * @return the depth of every path in {@code references}
+     */
+    static Map<String, Integer> depthsOf(Map<String, Set<String>> references) {
+        final Map<List<String>, List<String>> byPrefix = new HashMap<>();
+        for (String path : references.keySet()) {
+            final List<String> elements = ConfigUtil.splitPath(path);
+            for (int i = 1; i <= elements.size(); i++) {
+                byPrefix.computeIfAbsent(new ArrayList<>(elements.subList(0, i)), prefix -> new ArrayList<>())
+                        .add(path);
+            }
+        }
+
+        final Map<String, Integer> depths = new HashMap<>();
+        final Set<String> visiting = new HashSet<>();
+        for (String path : references.keySet()) {
+            depthOf(path, references, byPrefix, depths, visiting);
+        }
+        return depths;
+    }
+
+    private static int depthOf(String path, Map<String, Set<String>> references,
+                               Map<List<String>, List<String>> byPrefix, Map<String, Integer> depths,
+                               Set<String> visiting) {
+        final Integer known = depths.get(path);
+        if (known != null) {
+            return known;
+        }
+        if (!visiting.add(path)) {
+            return 0;
+        }
+
+        int deepest = 0;
+        for (String referred : references.get(path)) {
+            for (String candidate : valuesFor(referred, references, byPrefix)) {
+                deepest = Math.max(deepest, depthOf(candidate, references, byPrefix, depths, visiting));
+            }
+        }
+
+        visiting.remove(path);
+        depths.put(path, deepest + 1);
+        return deepest + 1;
+    }
+
+    /**
+     * @return the values with substitutions at or below {@code referred}, and the values that {@code referred}
+     * is inside of
+     */
+    private static List<String> valuesFor(String referred, Map<String, Set<String>> references,
+                                          Map<List<String>, List<String>> byPrefix) {
+        final List<String> elements;
+        try {
+            elements = ConfigUtil.splitPath(referred);
+        } catch (ConfigException e) {
+            // Not a valid path, Lightbend Config reports it when resolving
+            return Collections.emptyList();
+        }
+
+        final List<String> values = new ArrayList<>(byPrefix.getOrDefault(elements, Collections.emptyList()));
+        for (int i = 1; i < elements.size(); i++) {
+            final String container = ConfigUtil.joinPath(elements.subList(0, i));
+            if (references.containsKey(container)) {
+                values.add(container);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,93 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.ConfigFactory;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ConfigFootprintTest {
+
+    private static String document(int values) {
+        StringBuilder document = new StringBuilder("generated {\n");
+        for (int i = 0; i < values; i++) {
+            document.append("  key").append(i).append(" = \"value number ").append(i).append("\"\n");
+        }
+        return document.append("}\n").toString();
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testFootprintGrowsWithContent() {
+        ConfigFootprint small = ConfigFootprint.of(ConfigFactory.parseString(document(10)));
+        ConfigFootprint large = ConfigFootprint.of(ConfigFactory.parseString(document(1000)));
+
+        assertEquals(small.getValueCount(), 11);
+        assertTrue(small.getConfigTreeBytes() > 0);
+        assertTrue(small.getFlattenedBytes() > 0);
+        assertTrue(large.getTotalBytes() > 50 * small.getTotalBytes());
+        assertEquals(large.getTotalBytes(), large.getConfigTreeBytes() + large.getFlattenedBytes());
+    }
+
+    @Test
+    public void testStringValuesAreCountedOnceInTree() {
+        ConfigFootprint footprint = ConfigFootprint.of(
+                ConfigFactory.parseString("a = \"" + repeat('x', 10_000) + "\""));
+
+        assertTrue(footprint.getConfigTreeBytes() > 10_000);
+        assertTrue(footprint.getFlattenedBytes() < 1_000);
+    }
+
+    @Test
+    public void testStringsOutsideLatin1TakeTwoBytesPerCharacter() {
+        ConfigFootprint narrow = ConfigFootprint.of(ConfigFactory.parseString("a = \"" + repeat('x', 1000) + "\""));
+        ConfigFootprint wide = ConfigFootprint.of(ConfigFactory.parseString("a = \"" + repeat('\u20ac', 1000) + "\""));
+
+        assertEquals(wide.getConfigTreeBytes() - narrow.getConfigTreeBytes(), ConfigFootprint.COMPACT_STRINGS ? 1000 : 0);
+    }
+
+    @Test
+    public void testReloadOverBudgetIsRejected() {
+        AtomicReference<String> document = new AtomicReference<>(document(10));
+        LightbendConfigurationSource source = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString(document.get())),
+                SourceOptions.defaults().withMemoryBudget(64 * 1024));
+        AtomicReference<Throwable> rejected = new AtomicReference<>();
+        source.addListener(new ConfigSnapshotListener() {
+            @Override
+            public void onSnapshot(ConfigSnapshot snapshot) {
+            }
+
+            @Override
+            public void onRejected(Throwable cause) {
+                rejected.set(cause);
+            }
+        });
+        ConfigFootprint before = source.getFootprint();
+
+        document.set(document(10_000));
+        source.reload();
+
+        assertTrue(rejected.get() instanceof ConfigMemoryBudgetException);
+        assertTrue(((ConfigMemoryBudgetException) rejected.get()).getFootprint().getTotalBytes() > 64 * 1024);
+        assertEquals(source.getSnapshot().getVersion(), 1);
+        assertEquals(source.getFootprint().getTotalBytes(), before.getTotalBytes());
+    }
+
+    @Test(expectedExceptions = ConfigMemoryBudgetException.class)
+    public void testInitOverBudgetFails() {
+        new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString(document(10_000))),
+                SourceOptions.defaults().withMemoryBudget(64 * 1024));
+    }
+}
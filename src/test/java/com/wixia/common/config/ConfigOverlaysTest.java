@@ -0,0 +1,48 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.ConfigFactory;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+
+@Test
+public class ConfigOverlaysTest {
+
+    private static final String KEY = "cfg4j.lightbend.overlay.test";
+
+    @Test
+    public void testOverlaysAreFrozenUntilRefreshed() {
+        ConfigOverlays overlays = new ConfigOverlays();
+        LightbendConfigurationSource source = new LightbendConfigurationSourceBuilder()
+                .withFrozenOverlays(overlays)
+                .build();
+        try {
+            System.setProperty(KEY, "first");
+            overlays.refresh();
+            source.reload();
+            assertEquals(source.getConfig().getString(KEY), "first");
+
+            System.setProperty(KEY, "second");
+            ConfigFactory.invalidateCaches();
+            source.reload();
+            assertEquals(source.getConfig().getString(KEY), "first");
+
+            overlays.refresh();
+            source.reload();
+            assertEquals(source.getConfig().getString(KEY), "second");
+        } finally {
+            System.clearProperty(KEY);
+            ConfigFactory.invalidateCaches();
+        }
+    }
+
+    @Test
+    public void testOverlaysAreParsedOnce() {
+        ConfigOverlays overlays = new ConfigOverlays();
+
+        assertSame(overlays.get(), overlays.get());
+        assertFalse(overlays.get().isEmpty());
+    }
+}
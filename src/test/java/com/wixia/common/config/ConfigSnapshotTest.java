@@ -0,0 +1,141 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ConfigSnapshotTest {
+
+    @Test
+    public void testVersionOnlyChangesWithContent() {
+        AtomicReference<String> document = new AtomicReference<>("a=1, b { c = [1, 2] }");
+        LightbendConfigurationSource source = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString(document.get())));
+
+        ConfigSnapshot first = source.getSnapshot();
+        assertEquals(first.getVersion(), 1);
+
+        source.reload();
+        assertSame(source.getSnapshot(), first);
+
+        document.set("a=1, b { c = [1, 3] }");
+        source.reload();
+        ConfigSnapshot second = source.getSnapshot();
+        assertEquals(second.getVersion(), 2);
+        assertNotEquals(second.getContentHash(), first.getContentHash());
+        assertEquals(source.getConfiguration(null).get("b.c").toString(), "[1, 3]");
+    }
+
+    @Test
+    public void testContentHashIsIndependentOfOrder() {
+        Config config1 = ConfigFactory.parseString("x=1, y=two, z { w = true }");
+        Config config2 = ConfigFactory.parseString("z { w = true }, y=two, x=1");
+
+        assertEquals(
+                new ConfigSnapshot(1, config1, LightbendConfigurationSource.flatten(config1)).getContentHash(),
+                new ConfigSnapshot(7, config2, LightbendConfigurationSource.flatten(config2)).getContentHash());
+    }
+
+    @Test
+    public void testParallelFlatteningMatchesSequential() {
+        StringBuilder document = new StringBuilder();
+        for (int top = 0; top < 16; top++) {
+            document.append("tree").append(top).append(" {\n");
+            for (int i = 0; i < 500; i++) {
+                document.append("  key").append(i).append(" { value = ").append(i)
+                        .append(", \"quoted.key\" = v").append(i)
+                        .append(", list = [").append(i).append(", x], nothing = null }\n");
+            }
+            document.append("}\n");
+        }
+        document.append("single = 1\n");
+        Config config = ConfigFactory.load(ConfigFactory.parseString(document.toString()));
+
+        Map<String, Object> sequential = LightbendConfigurationSource.flatten(config);
+        Map<String, Object> parallel = LightbendConfigurationSource.flatten(config, ForkJoinPool.commonPool());
+
+        assertEquals(parallel, sequential);
+        assertEquals(ConfigSnapshot.contentHashOf(parallel), ConfigSnapshot.contentHashOf(sequential));
+        assertTrue(parallel.containsKey("tree3.key7.\"quoted.key\""));
+    }
+
+    @Test
+    public void testListenerReceivesChangedSnapshots() {
+        AtomicReference<String> document = new AtomicReference<>("a=1");
+        LightbendConfigurationSource source = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString(document.get())));
+        List<ConfigSnapshot> published = new ArrayList<>();
+        source.addListener(published::add);
+
+        source.reload();
+        document.set("a=2");
+        source.reload();
+
+        assertEquals(published.size(), 1);
+        assertSame(published.get(0).getConfig(), source.getConfig());
+        assertEquals(source.getConfig().getInt("a"), 2);
+    }
+
+    @Test
+    public void testFailingListenerDoesNotFailReloadOrOtherListeners() {
+        AtomicReference<String> document = new AtomicReference<>("a=1");
+        LightbendConfigurationSource source = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString(document.get())));
+        List<ConfigSnapshot> published = new ArrayList<>();
+        source.addListener(snapshot -> {
+            throw new IllegalStateException("listener failure");
+        });
+        source.addListener(published::add);
+
+        document.set("a=2");
+        source.reload();
+
+        assertEquals(source.getConfig().getInt("a"), 2);
+        assertEquals(published.size(), 1);
+    }
+
+    @Test
+    public void testListenerIsCalledOutsideLockOfSource() throws Exception {
+        AtomicReference<String> document = new AtomicReference<>("a=1");
+        LightbendConfigurationSource source = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString(document.get())));
+        List<Integer> published = new ArrayList<>();
+        AtomicReference<Thread> reloader = new AtomicReference<>();
+        source.addListener(snapshot -> {
+            published.add(snapshot.getConfig().getInt("a"));
+            if (reloader.get() == null) {
+                // A reload on another thread must not wait for this listener to return
+                document.set("a=3");
+                Thread thread = new Thread(source::reload);
+                reloader.set(thread);
+                thread.start();
+                try {
+                    thread.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        document.set("a=2");
+        source.reload();
+
+        assertFalse(reloader.get().isAlive());
+        assertEquals(source.getConfig().getInt("a"), 3);
+        assertEquals(published, Arrays.asList(2, 3));
+    }
+}
@@ -0,0 +1,101 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigSyntax;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class FlatDocumentReaderTest {
+
+    private static final String JSON = "{\n"
+            + "  \"table\": {\n"
+            + "    \"row1\": {\"name\": \"first \\\"row\\\"\", \"weight\": 1, \"ratio\": 0.5, \"on\": true},\n"
+            + "    \"row2\": {\"name\": \"second\\u0020row\", \"weight\": 3000000000, \"tags\": [\"a\", \"b\"]},\n"
+            + "    \"empty\": {},\n"
+            + "    \"dotted.key\": null\n"
+            + "  },\n"
+            + "  \"list\": [{\"a\": 1}, [2, 3]]\n"
+            + "}";
+
+    private static Config stream(ConfigSyntax syntax, String document) {
+        return ConfigFactory.parseMap(new FlatDocumentReader(syntax, "test").readEntries(new StringReader(document)),
+                "test");
+    }
+
+    @Test
+    public void testJsonMatchesLightbendParser() {
+        Config expected = ConfigFactory.parseString(JSON, ConfigParseOptions.defaults().setSyntax(ConfigSyntax.JSON));
+
+        assertEquals(stream(ConfigSyntax.JSON, JSON).root(), expected.root());
+    }
+
+    @Test
+    public void testPropertiesMatchesLightbendParser() {
+        String properties = "a.b=1\na.c = two \\\n  lines\nd\\:e=3\n";
+        Config expected = ConfigFactory.parseString(properties,
+                ConfigParseOptions.defaults().setSyntax(ConfigSyntax.PROPERTIES));
+
+        assertEquals(stream(ConfigSyntax.PROPERTIES, properties).root(), expected.root());
+    }
+
+    @Test
+    public void testPropertiesValueAndParentMatchesLightbendParser() {
+        String properties = "a=1\na.b=2\nc.d=3\nc=4\n";
+        Config expected = ConfigFactory.parseString(properties,
+                ConfigParseOptions.defaults().setSyntax(ConfigSyntax.PROPERTIES));
+
+        assertEquals(stream(ConfigSyntax.PROPERTIES, properties).root(), expected.root());
+    }
+
+    @Test(expectedExceptions = ConfigException.Parse.class)
+    public void testMalformedJson() {
+        stream(ConfigSyntax.JSON, "{\"a\": 1,, }");
+    }
+
+    @Test(expectedExceptions = ConfigException.Parse.class)
+    public void testJsonNumberWithoutDigits() {
+        stream(ConfigSyntax.JSON, "{\"a\": -}");
+    }
+
+    @Test(expectedExceptions = ConfigException.Parse.class)
+    public void testJsonValueAndParent() {
+        stream(ConfigSyntax.JSON, "{\"a\": {\"b\": 1}, \"a\": 2}");
+    }
+
+    @Test(expectedExceptions = ConfigException.Parse.class)
+    public void testJsonDuplicateField() {
+        stream(ConfigSyntax.JSON, "{\"a\": 1, \"a\": 2}");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testHoconIsNotSupported() {
+        new FlatDocumentReader(ConfigSyntax.CONF, "test");
+    }
+
+    @Test
+    public void testStreamingConfigFileFromBuilder() throws Exception {
+        Path file = Files.createTempFile("streaming", ".json");
+        try {
+            Files.write(file, Collections.singletonList(JSON), StandardCharsets.UTF_8);
+
+            LightbendConfigurationSourceBuilder builder = new LightbendConfigurationSourceBuilder()
+                    .withStreamingConfigFile(file.toString());
+
+            assertEquals(builder.createStrategyType(), LightbendConfigurationSourceBuilder.StrategyType.STREAMINGFILE);
+            assertEquals(builder.createLoadStrategy().load().getString("table.row2.name"), "second row");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.wixia.common.config;
+
+import com.sun.net.httpserver.HttpServer;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigSyntax;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test
+public class GzipLoadStrategyTest {
+
+    private static final String DOCUMENT = "base = 8080, server { port = ${base}, name = compressed }";
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testCompressedFile() throws Exception {
+        Path file = Files.createTempFile("compressed", ".conf.gz");
+        try {
+            Files.write(file, gzip(DOCUMENT));
+            LightbendConfigurationSource source = new LightbendConfigurationSourceBuilder()
+                    .withCompressedConfigFile(file.toString())
+                    .build();
+
+            assertEquals(source.getConfig().getInt("server.port"), 8080);
+            assertEquals(source.getConfig().getString("server.name"), "compressed");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testUnchangedFileIsNotParsedAgain() throws Exception {
+        Path file = Files.createTempFile("compressed", ".conf.gz");
+        try {
+            Files.write(file, gzip(DOCUMENT));
+            LightbendConfigFactoryHandler.GzipFileLoadStrategy strategy =
+                    new LightbendConfigFactoryHandler.GzipFileLoadStrategy(file, ConfigSyntax.CONF);
+
+            assertSame(strategy.parse(), strategy.parse());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testCompressedResource() throws Exception {
+        Path directory = Files.createTempDirectory("compressed");
+        Path resource = directory.resolve("settings.json.gz");
+        Path reference = directory.resolve("reference.conf");
+        try {
+            Files.write(resource, gzip("{\"server\": {\"port\": 9090}}"));
+            Files.write(reference, "server.timeout = 5".getBytes(StandardCharsets.UTF_8));
+            ClassLoader classLoader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, null);
+
+            LightbendConfigurationSource source = new LightbendConfigurationSourceBuilder()
+                    .withClassLoader(classLoader)
+                    .withCompressedConfigResource("settings.json.gz")
+                    .build();
+
+            assertEquals(source.getConfig().getInt("server.port"), 9090);
+            assertEquals(source.getConfig().getInt("server.timeout"), 5);
+        } finally {
+            Files.deleteIfExists(resource);
+            Files.deleteIfExists(reference);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testCompressedStreamingFile() throws Exception {
+        Path file = Files.createTempFile("compressed", ".json.gz");
+        try {
+            Files.write(file, gzip("{\"server\": {\"port\": 7070}}"));
+            LightbendConfigurationSource source = new LightbendConfigurationSourceBuilder()
+                    .withStreamingConfigFile(file.toString())
+                    .build();
+
+            assertEquals(source.getConfig().getInt("server.port"), 7070);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testUrlIsReloadedConditionally() throws Exception {
+        byte[] body = gzip(DOCUMENT);
+        AtomicInteger downloads = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/application.conf.gz", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                downloads.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            LightbendConfigurationSource source = new LightbendConfigurationSourceBuilder()
+                    .withCompressedConfigUrl(String.format("http://%s:%d/application.conf.gz",
+                            server.getAddress().getHostString(), server.getAddress().getPort()))
+                    .build();
+            Config first = source.getConfig();
+            source.reload();
+            source.reload();
+
+            assertEquals(source.getConfig().getInt("server.port"), 8080);
+            assertSame(source.getConfig(), first);
+            assertEquals(downloads.get(), 1);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testHungServerTimesOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/application.conf.gz", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            LightbendConfigFactoryHandler.GzipUrlLoadStrategy strategy = new LightbendConfigFactoryHandler.GzipUrlLoadStrategy(
+                    new URL(String.format("http://%s:%d/application.conf.gz",
+                            server.getAddress().getHostString(), server.getAddress().getPort())),
+                    ConfigSyntax.CONF, 200);
+
+            long start = System.nanoTime();
+            try {
+                strategy.parse();
+            } catch (ConfigException.IO e) {
+                assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+                return;
+            }
+            fail("A hung server must fail the load");
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.wixia.common.config;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class KeyAccessStatisticsTest {
+
+    @Test
+    public void testHotAndDeadKeys() {
+        KeyAccessStatistics statistics = new KeyAccessStatistics(1);
+        Properties properties = new AccessCountingProperties(statistics);
+        properties.put("a", "1");
+        properties.put("b", "2");
+        properties.put("c", "3");
+
+        properties.get("a");
+        properties.get("a");
+        properties.getProperty("b");
+        properties.get("missing");
+
+        KeyAccessReport report = statistics.report(1, Arrays.asList("a", "b", "c"));
+
+        assertEquals(report.getTotalReads(), 3);
+        assertEquals(report.getHotKeys().keySet().iterator().next(), "a");
+        assertEquals(report.getHotKeys().size(), 1);
+        assertEquals(report.getDeadKeys().first(), "c");
+        assertEquals(report.getDeadKeys().size(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSamplingInterval() {
+        new KeyAccessStatistics(0);
+    }
+}
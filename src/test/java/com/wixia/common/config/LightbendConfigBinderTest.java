@@ -0,0 +1,102 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import com.wixia.common.config.testconfig.Compound1Config;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+@Test
+public class LightbendConfigBinderTest {
+
+    public interface TypedConfig {
+        int count();
+
+        boolean enabled();
+
+        Duration timeout();
+
+        List<String> names();
+
+        default String summary() {
+            return count() + " " + names();
+        }
+    }
+
+    @Test
+    public void testBindWithPrefix() {
+        LightbendConfigurationSource source = new LightbendConfigurationSourceBuilder()
+                .withPrefix("pref1")
+                .build();
+
+        Compound1Config compound1Config = source.bind("compound1", Compound1Config.class);
+
+        assertEquals(compound1Config.val1(), "Prefix 1, Compound 1, value 1");
+        assertEquals(compound1Config.val3(),
+                "Prefix 1, Compound 1, value ${global.withExtension} Global value with extension");
+        assertEquals(compound1Config.url2().toString(),
+                "http://some.test.host.com/path1/path2/file.config/compound1/pref1/path3");
+    }
+
+    @Test
+    public void testValuesFollowSnapshots() {
+        AtomicReference<String> document = new AtomicReference<>(
+                "typed { count = 1, enabled = true, timeout = 5s, names = [a, b] }");
+        LightbendConfigurationSource source = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString(document.get())));
+
+        TypedConfig typed = source.bind("typed", TypedConfig.class);
+        List<String> names = typed.names();
+
+        assertEquals(typed.count(), 1);
+        assertEquals(typed.timeout(), Duration.ofSeconds(5));
+        assertSame(typed.names(), names);
+
+        document.set("typed { count = 2, enabled = false, timeout = 1m, names = [c] }");
+        source.reload();
+
+        assertEquals(typed.count(), 2);
+        assertEquals(typed.enabled(), false);
+        assertEquals(typed.timeout(), Duration.ofMinutes(1));
+        assertEquals(typed.names(), Arrays.asList("c"));
+    }
+
+    @Test
+    public void testDefaultMethodsAreNotBound() {
+        LightbendConfigurationSource source = new LightbendConfigurationSource(new LightbendConfigFactoryHandler(
+                () -> ConfigFactory.parseString("typed { count = 1, enabled = true, timeout = 5s, names = [a] }")));
+
+        assertEquals(source.bind("typed", TypedConfig.class).summary(), "1 [a]");
+    }
+
+    @Test
+    public void testRemovedPathKeepsLastGoodValue() {
+        AtomicReference<String> document = new AtomicReference<>(
+                "typed { count = 1, enabled = true, timeout = 5s, names = [a, b] }");
+        LightbendConfigurationSource source = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString(document.get())));
+        TypedConfig typed = source.bind("typed", TypedConfig.class);
+
+        document.set("typed { count = 2, enabled = false, names = [c] }");
+        source.reload();
+
+        assertEquals(typed.timeout(), Duration.ofSeconds(5));
+        assertEquals(typed.count(), 2);
+        assertEquals(typed.names(), Arrays.asList("c"));
+    }
+
+    @Test(expectedExceptions = ConfigException.Missing.class)
+    public void testMissingPathFailsOnBind() {
+        LightbendConfigurationSource source = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString("typed { count = 1 }")));
+
+        source.bind("typed", TypedConfig.class);
+    }
+}
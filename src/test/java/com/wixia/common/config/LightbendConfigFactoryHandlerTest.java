@@ -0,0 +1,183 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigResolveOptions;
+import org.testng.annotations.Test;
+
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class LightbendConfigFactoryHandlerTest {
+
+    @Test
+    public void testPrefixScopedLoadingResolvesOnlyPrefixAndDependencies() {
+        LightbendConfigurationSource source = new LightbendConfigurationSourceBuilder()
+                .withPrefix("pref1")
+                .withPrefixScopedLoading()
+                .build();
+        Config config = source.getConfig();
+
+        assertEquals(config.getString("compound1.val1"), "Prefix 1, Compound 1, value 1");
+        assertEquals(config.getString("compound1.url2"),
+                "http://some.test.host.com/path1/path2/file.config/compound1/pref1/path3");
+        assertEquals(config.getString("compound1.val3"),
+                "Prefix 1, Compound 1, value ${global.withExtension} Global value with extension");
+        assertTrue(config.hasPath("globalUrl"));
+        assertTrue(config.hasPath("global.withExtension"));
+        assertFalse(config.hasPath("pref2"));
+        assertFalse(config.hasPath("globalVal"));
+        assertFalse(source.getSnapshot().getEntries().keySet().stream().anyMatch(key -> key.startsWith("pref2.")));
+    }
+
+    @Test
+    public void testPrefixScopedLoadingFollowsChainedSubstitutions() {
+        LightbendLoadStrategy strategy = new LightbendLoadStrategy() {
+            @Override
+            public Config load() {
+                return loadUnresolved().resolve();
+            }
+
+            @Override
+            public Config loadUnresolved() {
+                return ConfigFactory.parseString(
+                        "base = 1, middle = ${base}, tenant.a { value = ${middle} }, other = ${base}");
+            }
+        };
+
+        Config full = new LightbendConfigFactoryHandler(strategy, "tenant.a").init();
+        Config scoped = new LightbendConfigFactoryHandler(strategy, "tenant.a").withPrefixScopedLoading().init();
+
+        assertEquals(scoped.getInt("value"), full.getInt("value"));
+        assertEquals(scoped.getInt("middle"), 1);
+        assertEquals(scoped.getInt("base"), 1);
+        assertTrue(full.hasPath("other"));
+        assertFalse(scoped.hasPath("other"));
+    }
+
+    private static LightbendLoadStrategy strategyFor(String document, ConfigResolveOptions resolveOptions) {
+        return new LightbendLoadStrategy() {
+            @Override
+            public Config load() {
+                return loadUnresolved().resolve(resolveOptions);
+            }
+
+            @Override
+            public Config loadUnresolved() {
+                return ConfigFactory.parseString(document);
+            }
+
+            @Override
+            public ConfigResolveOptions resolveOptions() {
+                return resolveOptions;
+            }
+        };
+    }
+
+    @Test
+    public void testPrefixScopedLoadingUsesResolveOptionsOfStrategy() {
+        LightbendLoadStrategy strategy = strategyFor("tenant.a { value = ${missing}, other = 1 }",
+                ConfigResolveOptions.defaults().setAllowUnresolved(true));
+
+        Config scoped = new LightbendConfigFactoryHandler(strategy, "tenant.a").withPrefixScopedLoading().init();
+
+        assertFalse(scoped.isResolved());
+        assertTrue(scoped.hasPath("other"));
+    }
+
+    @Test
+    public void testPrefixScopedLoadingMatchesPathsByElement() {
+        LightbendLoadStrategy strategy = strategyFor("y = 1, base { x = ${y}, z = 2 }, basement = ${missing}, "
+                + "tenant.a { value = ${\"base\".x}, all = ${base} }", ConfigResolveOptions.defaults());
+
+        Config scoped = new LightbendConfigFactoryHandler(strategy, "tenant.a").withPrefixScopedLoading().init();
+
+        assertEquals(scoped.getInt("value"), 1);
+        assertEquals(scoped.getInt("all.z"), 2);
+        assertFalse(scoped.hasPath("basement"));
+    }
+
+    @Test
+    public void testUnresolvedStackMatchesLoadWithOtherClassLoader() throws Exception {
+        Path directory = Files.createTempDirectory("class-loader");
+        try {
+            Files.write(directory.resolve("application.conf"), "module = application".getBytes(StandardCharsets.UTF_8));
+            Files.write(directory.resolve("reference.conf"), "module = reference, moduleReference = ${module}"
+                    .getBytes(StandardCharsets.UTF_8));
+
+            try (URLClassLoader module = new URLClassLoader(new URL[]{directory.toUri().toURL()}, null)) {
+                // Reference from the given class loader, application from the context class loader
+                LightbendLoadStrategy strategy =
+                        new LightbendConfigFactoryHandler.ClassLoaderParseOptionsResolveOptionsLoadStrategy(
+                                module, ConfigParseOptions.defaults(), ConfigResolveOptions.defaults());
+                Config loaded = strategy.load();
+
+                assertEquals(loaded.getString("moduleReference"), "reference");
+                assertEquals(strategy.loadUnresolved().resolve().root(), loaded.root());
+            }
+        } finally {
+            Files.deleteIfExists(directory.resolve("application.conf"));
+            Files.deleteIfExists(directory.resolve("reference.conf"));
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testPrefixScopedLoadingResolvesSelfReferences() {
+        LightbendLoadStrategy strategy = strategyFor("pref1 { p = a }\npref1 { p = ${pref1.p}\":b\" }",
+                ConfigResolveOptions.defaults());
+
+        Config scoped = new LightbendConfigFactoryHandler(strategy, "pref1").withPrefixScopedLoading().init();
+
+        assertEquals(scoped.getString("p"), "a:b");
+        assertEquals(scoped.getString("p"), new LightbendConfigFactoryHandler(strategy, "pref1").init().getString("p"));
+    }
+
+    @Test
+    public void testResourceFingerprintFollowsDirectoryAndJarFiles() throws Exception {
+        Path directory = Files.createTempDirectory("fingerprint");
+        Path document = directory.resolve("app.conf");
+        Path jar = Files.createTempFile("fingerprint", ".jar");
+        try {
+            Files.write(document, "a = 1".getBytes(StandardCharsets.UTF_8));
+            try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+                jarOut.putNextEntry(new JarEntry("app.conf"));
+                jarOut.write("a = 2".getBytes(StandardCharsets.UTF_8));
+            }
+
+            try (URLClassLoader loader = new URLClassLoader(
+                    new URL[]{directory.toUri().toURL(), jar.toUri().toURL()}, null)) {
+                String before = InputFingerprints.ofResource(loader, "app.conf");
+                assertNotNull(before);
+                assertTrue(before.contains("!/app.conf"));
+
+                Files.write(document, "a = 10".getBytes(StandardCharsets.UTF_8));
+                assertNotEquals(InputFingerprints.ofResource(loader, "app.conf"), before);
+            }
+        } finally {
+            Files.deleteIfExists(document);
+            Files.deleteIfExists(directory);
+            Files.deleteIfExists(jar);
+        }
+    }
+
+    @Test
+    public void testRemoteUrlIsNotFingerprinted() throws Exception {
+        assertNull(InputFingerprints.ofUrl(new URL("http://localhost/app.conf")));
+    }
+}
@@ -0,0 +1,211 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.ConfigFactory;
+import org.cfg4j.source.context.environment.DefaultEnvironment;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test
+public class LightbendConfigurationSourceGroupTest {
+
+    private static LightbendConfigurationSource sourceFor(AtomicReference<String> document, AtomicLong delayMillis) {
+        return new LightbendConfigurationSource(new LightbendConfigFactoryHandler(() -> {
+            try {
+                Thread.sleep(delayMillis.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ConfigFactory.parseString(document.get());
+        }));
+    }
+
+    @Test
+    public void testMembersArePublishedAsOneGeneration() {
+        AtomicReference<String> service = new AtomicReference<>("version = 1");
+        AtomicReference<String> routes = new AtomicReference<>("version = 1");
+        AtomicLong delay = new AtomicLong();
+        LightbendConfigurationSource serviceSource = sourceFor(service, delay);
+        LightbendConfigurationSource routesSource = sourceFor(routes, delay);
+        LightbendConfigurationSourceGroup group = new LightbendConfigurationSourceGroup(serviceSource, routesSource);
+
+        LightbendConfigurationSourceGroup.Generation first = group.getGeneration();
+        group.reload();
+        assertSame(group.getGeneration(), first);
+
+        service.set("version = 2");
+        routes.set("version = 2");
+        delay.set(300);
+        long start = System.nanoTime();
+        group.reload();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(550), "members are loaded in parallel");
+        LightbendConfigurationSourceGroup.Generation second = group.getGeneration();
+        assertEquals(second.getNumber(), 2);
+        assertEquals(second.getSnapshot(serviceSource).getConfig().getInt("version"), 2);
+        assertEquals(second.getSnapshot(routesSource).getConfig().getInt("version"), 2);
+        assertEquals(first.getSnapshot(routesSource).getConfig().getInt("version"), 1);
+    }
+
+    @Test
+    public void testFailingMemberKeepsWholeGeneration() {
+        AtomicReference<String> service = new AtomicReference<>("version = 1");
+        AtomicReference<String> routes = new AtomicReference<>("version = 1");
+        AtomicLong delay = new AtomicLong();
+        LightbendConfigurationSource serviceSource = sourceFor(service, delay);
+        LightbendConfigurationSource routesSource = sourceFor(routes, delay);
+        LightbendConfigurationSourceGroup group = new LightbendConfigurationSourceGroup(serviceSource, routesSource);
+
+        service.set("version = 2");
+        routes.set("version = ${missing}");
+        group.reload();
+
+        assertEquals(group.getGeneration().getNumber(), 1);
+        assertEquals(group.getGeneration().getSnapshot(serviceSource).getConfig().getInt("version"), 1);
+        assertEquals(serviceSource.getConfig().getInt("version"), 1);
+        assertNotNull(group.getLastFailure());
+        assertNotNull(routesSource.getLastFailure());
+
+        routes.set("version = 2");
+        group.reload();
+
+        assertEquals(group.getGeneration().getNumber(), 2);
+        assertNull(group.getLastFailure());
+    }
+
+    @Test
+    public void testMemberWithKnownRejectedInputFailsGroup() throws Exception {
+        AtomicReference<String> service = new AtomicReference<>("version = 1");
+        Path routesFile = Files.createTempFile("routes", ".json");
+        try {
+            Files.write(routesFile, Collections.singletonList("{\"version\": 1}"), StandardCharsets.UTF_8);
+            LightbendConfigurationSource serviceSource = sourceFor(service, new AtomicLong());
+            LightbendConfigurationSource routesSource = new LightbendConfigurationSourceBuilder()
+                    .withStreamingConfigFile(routesFile.toString())
+                    .build();
+            LightbendConfigurationSourceGroup group = new LightbendConfigurationSourceGroup(serviceSource, routesSource);
+
+            service.set("version = 2");
+            Files.write(routesFile, Collections.singletonList("{\"version\": "), StandardCharsets.UTF_8);
+            group.reload();
+            assertNotNull(group.getLastFailure());
+
+            // The rejected routes file is not loaded again, which must not let the service member through alone
+            group.reload();
+
+            assertNotNull(group.getLastFailure());
+            assertEquals(group.getGeneration().getNumber(), 1);
+            assertEquals(serviceSource.getConfig().getInt("version"), 1);
+        } finally {
+            Files.deleteIfExists(routesFile);
+        }
+    }
+
+    @Test
+    public void testMemberReadsGoThroughGeneration() {
+        AtomicReference<String> service = new AtomicReference<>("version = 1");
+        AtomicReference<String> routes = new AtomicReference<>("version = 1");
+        AtomicLong delay = new AtomicLong();
+        LightbendConfigurationSource serviceSource = sourceFor(service, delay);
+        LightbendConfigurationSource routesSource = sourceFor(routes, delay);
+        LightbendConfigurationSourceGroup group = new LightbendConfigurationSourceGroup(serviceSource, routesSource);
+
+        service.set("version = 2");
+        assertEquals(serviceSource.getConfiguration(new DefaultEnvironment()).get("version"), 1);
+
+        routes.set("version = ${missing}");
+        serviceSource.reload();
+        assertEquals(serviceSource.getConfig().getInt("version"), 1);
+        assertNotNull(group.getLastFailure());
+
+        routes.set("version = 2");
+        serviceSource.reload();
+        assertEquals(group.getGeneration().getNumber(), 2);
+        assertEquals(serviceSource.getConfiguration(new DefaultEnvironment()).get("version"), 2);
+        assertEquals(routesSource.getConfig().getInt("version"), 2);
+    }
+
+    @Test
+    public void testListenersReadNewGeneration() {
+        AtomicReference<String> service = new AtomicReference<>("version = 1");
+        AtomicReference<String> routes = new AtomicReference<>("version = 1");
+        AtomicLong delay = new AtomicLong();
+        LightbendConfigurationSource serviceSource = sourceFor(service, delay);
+        LightbendConfigurationSource routesSource = sourceFor(routes, delay);
+        new LightbendConfigurationSourceGroup(serviceSource, routesSource);
+        List<Integer> seen = new ArrayList<>();
+        serviceSource.addListener(snapshot -> {
+            seen.add(serviceSource.getConfig().getInt("version"));
+            seen.add(routesSource.getConfig().getInt("version"));
+        });
+
+        service.set("version = 2");
+        routes.set("version = 2");
+        serviceSource.reload();
+
+        assertEquals(seen, Arrays.asList(2, 2));
+    }
+
+    @Test
+    public void testRejectedMemberKeepsOthersOutOfGroup() {
+        AtomicLong delay = new AtomicLong();
+        LightbendConfigurationSource first = sourceFor(new AtomicReference<>("version = 1"), delay);
+        LightbendConfigurationSource grouped = sourceFor(new AtomicReference<>("version = 1"), delay);
+        new LightbendConfigurationSourceGroup(grouped);
+
+        for (LightbendConfigurationSource[] members : new LightbendConfigurationSource[][]{
+                {first, grouped}, {first, first}}) {
+            try {
+                new LightbendConfigurationSourceGroup(members);
+                fail("Group of " + Arrays.toString(members) + " was created");
+            } catch (IllegalStateException expected) {
+                // The first member must still be free to join another group
+            }
+        }
+
+        assertEquals(new LightbendConfigurationSourceGroup(first).getMembers(), Collections.singletonList(first));
+    }
+
+    @Test
+    public void testMembersLoadWithCallersContextClassLoader() throws Exception {
+        AtomicReference<ClassLoader> seen = new AtomicReference<>();
+        LightbendConfigurationSource source = new LightbendConfigurationSource(new LightbendConfigFactoryHandler(() -> {
+            seen.set(Thread.currentThread().getContextClassLoader());
+            return ConfigFactory.parseString("version = 1");
+        }));
+        LightbendConfigurationSourceGroup group = new LightbendConfigurationSourceGroup(source);
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        try (URLClassLoader module1 = new URLClassLoader(new URL[0], null);
+             URLClassLoader module2 = new URLClassLoader(new URL[0], null)) {
+            thread.setContextClassLoader(module1);
+            group.reload();
+            assertSame(seen.get(), module1);
+            // Let the pooled thread that ran the first load go idle, so the second load can reuse it
+            Thread.sleep(100);
+            thread.setContextClassLoader(module2);
+            group.reload();
+            assertSame(seen.get(), module2);
+        } finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.ConfigFactory;
+import org.cfg4j.source.context.environment.DefaultEnvironment;
+import org.testng.Reporter;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Readers call {@code getConfiguration} and a bound interface while writers rewrite the configuration file
+ * and reload. Every document has the same generation number in all of its keys, so a reader that sees two
+ * different numbers in one snapshot has seen a torn or mixed snapshot, and a reader that sees the number go
+ * down has seen an older snapshot replace a newer one.
+ * <p>
+ * The test runs for several seconds, so it is in the {@code stress} group, which the default build excludes.
+ * Run it with {@code mvn test -Pstress}.
+ */
+@Test(groups = "stress")
+public class LightbendConfigurationSourceStressTest {
+
+    private static final int KEYS = 50;
+    private static final int READERS = 8;
+    private static final int WRITERS = 2;
+    private static final long RUN_MILLIS = 1500;
+    private static final int MAX_SAMPLES_PER_READER = 200_000;
+
+    public interface Generation {
+        int k0();
+
+        int k49();
+    }
+
+    @DataProvider
+    public Object[][] documents() {
+        return new Object[][]{
+                {"json", (IntFunction<String>) LightbendConfigurationSourceStressTest::json,
+                        (Function<Path, LightbendConfigurationSource>) file -> new LightbendConfigurationSourceBuilder()
+                                .withStreamingConfigFile(file.toString())
+                                .build()},
+                {"conf", (IntFunction<String>) LightbendConfigurationSourceStressTest::hocon,
+                        (Function<Path, LightbendConfigurationSource>) file -> new LightbendConfigurationSource(
+                                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseFile(file.toFile())))},
+        };
+    }
+
+    @Test(dataProvider = "documents")
+    public void testReadersNeverSeeMixedSnapshots(String extension, IntFunction<String> document,
+                                                  Function<Path, LightbendConfigurationSource> sourceFor)
+            throws Exception {
+        final Path file = Files.createTempFile("stress", "." + extension);
+        try {
+            write(file, document.apply(0));
+            final LightbendConfigurationSource source = sourceFor.apply(file);
+            final Generation bound = source.bind("gen", Generation.class);
+
+            final AtomicInteger generations = new AtomicInteger();
+            final Queue<String> violations = new ConcurrentLinkedQueue<>();
+            final List<long[]> propertiesLatencies = new ArrayList<>();
+            final List<long[]> boundLatencies = new ArrayList<>();
+            final AtomicInteger propertiesReads = new AtomicInteger();
+            final AtomicInteger boundReads = new AtomicInteger();
+            final CountDownLatch start = new CountDownLatch(1);
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+
+            final ExecutorService executor = Executors.newFixedThreadPool(READERS + WRITERS);
+            for (int i = 0; i < READERS; i++) {
+                final long[] samples = new long[MAX_SAMPLES_PER_READER];
+                final boolean useBinder = i % 2 == 1;
+                (useBinder ? boundLatencies : propertiesLatencies).add(samples);
+                executor.submit(() -> {
+                    start.await();
+                    int last = 0;
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        final long before = System.nanoTime();
+                        final int seen = useBinder ? readBound(bound, last, violations) : readProperties(source, violations);
+                        final long elapsed = System.nanoTime() - before;
+                        if (count < samples.length) {
+                            samples[count] = elapsed;
+                        }
+                        count++;
+                        if (seen < last) {
+                            violations.add(String.format("generation went from %d to %d", last, seen));
+                        }
+                        last = Math.max(last, seen);
+                    }
+                    (useBinder ? boundReads : propertiesReads).addAndGet(count);
+                    return null;
+                });
+            }
+            final Object fileLock = new Object();
+            for (int i = 0; i < WRITERS; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        synchronized (fileLock) {
+                            write(file, document.apply(generations.incrementAndGet()));
+                        }
+                        source.reload();
+                        Thread.sleep(1);
+                    }
+                    return null;
+                });
+            }
+
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(RUN_MILLIS + 30_000, TimeUnit.MILLISECONDS));
+
+            final String stats = report(extension + " getConfiguration", propertiesReads.get(), generations.get(),
+                    propertiesLatencies) + "; " + report(extension + " bound interface", boundReads.get(),
+                    generations.get(), boundLatencies);
+            Reporter.log(stats, true);
+            assertTrue(propertiesReads.get() > 0 && boundReads.get() > 0, "Readers made no progress: " + stats);
+            assertTrue(violations.isEmpty(), violations.peek() + " (" + stats + ")");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static int readProperties(LightbendConfigurationSource source, Queue<String> violations) {
+        final Properties properties = source.getConfiguration(new DefaultEnvironment());
+        final Object first = properties.get("gen.k0");
+        for (int k = 1; k < KEYS; k++) {
+            final Object value = properties.get("gen.k" + k);
+            if (!first.equals(value)) {
+                violations.add(String.format("mixed snapshot: gen.k0=%s, gen.k%d=%s", first, k, value));
+            }
+        }
+        return ((Number) first).intValue();
+    }
+
+    private static int readBound(Generation bound, int last, Queue<String> violations) {
+        final int first = bound.k0();
+        final int second = bound.k49();
+        if (second < first || first < last) {
+            violations.add(String.format("bound values went back: %d, %d after %d", first, second, last));
+        }
+        return second;
+    }
+
+    private static String report(String name, int reads, int generations, List<long[]> latencies) {
+        final long[] all = latencies.stream().flatMapToLong(Arrays::stream).filter(nanos -> nanos > 0).sorted().toArray();
+        return String.format("%s: %d reads/s over %d generations, latency p50=%dus p99=%dus p99.9=%dus max=%dus",
+                name, reads * 1000L / RUN_MILLIS, generations,
+                percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999), percentile(all, 1.0));
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        final int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, index)]);
+    }
+
+    private static String json(int generation) {
+        final StringBuilder document = new StringBuilder("{\"gen\": {");
+        for (int k = 0; k < KEYS; k++) {
+            document.append(k == 0 ? "" : ", ").append("\"k").append(k).append("\": ").append(generation);
+        }
+        return document.append("}}").toString();
+    }
+
+    private static String hocon(int generation) {
+        final StringBuilder document = new StringBuilder("generation = ").append(generation).append("\ngen {\n");
+        for (int k = 0; k < KEYS; k++) {
+            document.append("  k").append(k).append(" = ${generation}\n");
+        }
+        return document.append("}\n").toString();
+    }
+
+    /**
+     * Replace the file in one step, the way deployment tools do, so that the source never reads half a file.
+     */
+    private static void write(Path file, String content) throws IOException {
+        final Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), "stress", ".tmp");
+        Files.write(temporary, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
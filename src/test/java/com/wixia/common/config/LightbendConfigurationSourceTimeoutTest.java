@@ -0,0 +1,153 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class LightbendConfigurationSourceTimeoutTest {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(200);
+
+    /**
+     * Serves a document after an adjustable delay, like a file on a slow mount.
+     */
+    private static class SlowLoadStrategy implements LightbendLoadStrategy {
+        final AtomicReference<String> document = new AtomicReference<>();
+        volatile long delayMillis;
+
+        SlowLoadStrategy(String document, long delayMillis) {
+            this.document.set(document);
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public Config load() {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return ConfigFactory.parseString(document.get());
+        }
+    }
+
+    private static LightbendConfigurationSource sourceFor(SlowLoadStrategy strategy, Path cacheFile) {
+        SourceOptions options = SourceOptions.defaults().withLoadTimeout(TIMEOUT).withSnapshotCacheFile(cacheFile);
+        return new LightbendConfigurationSource(new LightbendConfigFactoryHandler(strategy), options);
+    }
+
+    @Test
+    public void testSlowReloadKeepsLastGoodSnapshot() {
+        SlowLoadStrategy strategy = new SlowLoadStrategy("server.port = 8080", 0);
+        LightbendConfigurationSource source = sourceFor(strategy, null);
+        AtomicReference<Throwable> rejected = new AtomicReference<>();
+        source.addListener(new ConfigSnapshotListener() {
+            @Override
+            public void onSnapshot(ConfigSnapshot snapshot) {
+            }
+
+            @Override
+            public void onRejected(Throwable cause) {
+                rejected.set(cause);
+            }
+        });
+
+        strategy.document.set("server.port = 9090");
+        strategy.delayMillis = 2000;
+        long start = System.nanoTime();
+        source.reload();
+
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(1500).toNanos());
+        assertEquals(source.getConfig().getInt("server.port"), 8080);
+        assertTrue(source.getLastFailure() instanceof ConfigLoadTimeoutException);
+        assertTrue(rejected.get() instanceof ConfigLoadTimeoutException);
+
+        strategy.delayMillis = 0;
+        source.reload();
+
+        assertEquals(source.getConfig().getInt("server.port"), 9090);
+        assertNull(source.getLastFailure());
+    }
+
+    @Test
+    public void testSlowInitStartsFromSnapshotCacheFile() throws Exception {
+        Path cacheFile = Files.createTempFile("snapshot-cache", ".json");
+        try {
+            sourceFor(new SlowLoadStrategy("server.port = 8080", 0), cacheFile);
+            assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheFile)), "rw-------");
+
+            LightbendConfigurationSource source = sourceFor(new SlowLoadStrategy("server.port = 9090", 1000), cacheFile);
+
+            assertEquals(source.getConfig().getInt("server.port"), 8080);
+            assertTrue(source.getLastFailure() instanceof ConfigLoadTimeoutException);
+        } finally {
+            Files.deleteIfExists(cacheFile);
+        }
+    }
+
+    @Test(expectedExceptions = ConfigLoadTimeoutException.class)
+    public void testSlowInitWithoutSnapshotCacheFileFails() {
+        sourceFor(new SlowLoadStrategy("server.port = 8080", 1000), null);
+    }
+
+    @Test
+    public void testTimedOutCallerDoesNotCancelSharedLoadForLaterCallers() throws Exception {
+        SlowLoadStrategy strategy = new SlowLoadStrategy("server.port = 8080", 500);
+        BoundedLoader loader = new BoundedLoader(Duration.ofMillis(400));
+
+        CompletableFuture<Config> first = CompletableFuture.supplyAsync(() -> loader.load(strategy::load));
+        Thread.sleep(250);
+        Config second = loader.load(strategy::load);
+
+        assertEquals(second.getInt("server.port"), 8080);
+        assertTrue(first.handle((config, failure) -> failure.getCause() instanceof ConfigLoadTimeoutException).get());
+    }
+
+    @Test
+    public void testLoadRunsWithCallersContextClassLoader() throws Exception {
+        BoundedLoader loader = new BoundedLoader(Duration.ofSeconds(5));
+        Path directory1 = Files.createTempDirectory("bounded-loader");
+        Path directory2 = Files.createTempDirectory("bounded-loader");
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        try {
+            Files.write(directory1.resolve("application.conf"), Collections.singletonList("module = 1"),
+                    StandardCharsets.UTF_8);
+            Files.write(directory2.resolve("application.conf"), Collections.singletonList("module = 2"),
+                    StandardCharsets.UTF_8);
+
+            try (URLClassLoader module1 = new URLClassLoader(new URL[]{directory1.toUri().toURL()}, null);
+                 URLClassLoader module2 = new URLClassLoader(new URL[]{directory2.toUri().toURL()}, null)) {
+                thread.setContextClassLoader(module1);
+                assertEquals(loader.load(ConfigFactory::load).getInt("module"), 1);
+                // Let the pooled thread that ran the first load go idle, so the second load can reuse it
+                Thread.sleep(100);
+                thread.setContextClassLoader(module2);
+                assertEquals(loader.load(ConfigFactory::load).getInt("module"), 2);
+            }
+        } finally {
+            thread.setContextClassLoader(original);
+            Files.deleteIfExists(directory1.resolve("application.conf"));
+            Files.deleteIfExists(directory2.resolve("application.conf"));
+            Files.delete(directory1);
+            Files.delete(directory2);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class LightbendConfigurationSourceValidationTest {
+
+    /**
+     * Parses a document and identifies it by its text, like a file strategy identifies a file by its size and
+     * modification time.
+     */
+    private static class DocumentLoadStrategy implements LightbendLoadStrategy {
+        final AtomicReference<String> document = new AtomicReference<>();
+        final AtomicInteger loads = new AtomicInteger();
+
+        DocumentLoadStrategy(String document) {
+            this.document.set(document);
+        }
+
+        @Override
+        public Config load() {
+            loads.incrementAndGet();
+            return ConfigFactory.parseString(document.get());
+        }
+
+        @Override
+        public String fingerprint() {
+            return document.get();
+        }
+    }
+
+    private static LightbendConfigurationSource sourceFor(DocumentLoadStrategy strategy) {
+        return new LightbendConfigurationSource(new LightbendConfigFactoryHandler(strategy),
+                SourceOptions.defaults().withValidator(
+                        config -> config.checkValid(ConfigFactory.parseString("server { port = 0 }"))));
+    }
+
+    @Test
+    public void testRejectedReloadKeepsLastGoodSnapshot() {
+        DocumentLoadStrategy strategy = new DocumentLoadStrategy("server.port = 8080");
+        LightbendConfigurationSource source = sourceFor(strategy);
+        AtomicReference<Throwable> rejected = new AtomicReference<>();
+        source.addListener(new ConfigSnapshotListener() {
+            @Override
+            public void onSnapshot(ConfigSnapshot snapshot) {
+            }
+
+            @Override
+            public void onRejected(Throwable cause) {
+                rejected.set(cause);
+            }
+        });
+
+        strategy.document.set("server = not-an-object");
+        source.reload();
+
+        assertEquals(source.getConfig().getInt("server.port"), 8080);
+        assertTrue(source.getLastFailure() instanceof ConfigException.ValidationFailed);
+        assertNotNull(rejected.get());
+
+        strategy.document.set("server.port = 8081");
+        source.reload();
+
+        assertEquals(source.getConfig().getInt("server.port"), 8081);
+        assertNull(source.getLastFailure());
+    }
+
+    @Test
+    public void testUnresolvableInputIsNotLoadedAgainUntilChanged() {
+        DocumentLoadStrategy strategy = new DocumentLoadStrategy("server.port = 8080");
+        LightbendConfigurationSource source = sourceFor(strategy);
+
+        strategy.document.set("server.port = ${missing}");
+        source.reload();
+        source.reload();
+        source.getConfiguration(null);
+
+        assertEquals(strategy.loads.get(), 2);
+        assertTrue(source.getLastFailure() instanceof ConfigException.UnresolvedSubstitution);
+
+        strategy.document.set("server.port = 9090");
+        source.reload();
+
+        assertEquals(strategy.loads.get(), 3);
+        assertEquals(source.getConfig().getInt("server.port"), 9090);
+    }
+
+    @Test
+    public void testOlderLoadDoesNotReplaceLaterOne() {
+        DocumentLoadStrategy strategy = new DocumentLoadStrategy("server.port = 8080");
+        LightbendConfigurationSource source = sourceFor(strategy);
+
+        strategy.document.set("server.port = 8081");
+        LightbendConfigurationSource.Candidate older = source.loadCandidate();
+        strategy.document.set("server = not-an-object");
+        LightbendConfigurationSource.Candidate rejected = source.loadCandidate();
+        strategy.document.set("server.port = 8082");
+        LightbendConfigurationSource.Candidate newer = source.loadCandidate();
+
+        source.apply(newer);
+        source.apply(rejected);
+        source.apply(older);
+
+        assertEquals(source.getConfig().getInt("server.port"), 8082);
+        assertNull(source.getLastFailure());
+    }
+
+    @Test(expectedExceptions = ConfigException.ValidationFailed.class)
+    public void testInvalidInitialConfigurationIsThrown() {
+        sourceFor(new DocumentLoadStrategy("server = none"));
+    }
+}
@@ -0,0 +1,122 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+
+@Test
+public class LocalConfigDaemonTest {
+
+    private static LightbendConfigurationSource clientOf(LocalConfigDaemon daemon, Path tokenFile,
+                                                         String fallbackDocument) {
+        return new LightbendConfigurationSource(new LightbendConfigFactoryHandler(
+                new LightbendConfigFactoryHandler.DaemonLoadStrategy(daemon.getPort(), tokenFile, 1000,
+                        () -> ConfigFactory.parseString(fallbackDocument))));
+    }
+
+    private static Path tokenFile() throws IOException {
+        Path directory = Files.createTempDirectory("config-daemon");
+        directory.toFile().deleteOnExit();
+        Path tokenFile = directory.resolve("daemon.token");
+        tokenFile.toFile().deleteOnExit();
+        return tokenFile;
+    }
+
+    @Test
+    public void testClientFollowsDaemonSnapshots() throws Exception {
+        AtomicReference<String> document = new AtomicReference<>(
+                "a { b = 1, c = [x, y] }, d = ${a.b}, e = removed");
+        LightbendConfigurationSource served = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString(document.get())));
+
+        Path tokenFile = tokenFile();
+        try (LocalConfigDaemon daemon = new LocalConfigDaemon(served, 0, tokenFile)) {
+            LightbendConfigurationSource client = clientOf(daemon, tokenFile, "source = fallback");
+            assertEquals(client.getConfig().getInt("d"), 1);
+            assertEquals(client.getConfig().getStringList("a.c").size(), 2);
+
+            Config unchanged = client.getConfig();
+            client.reload();
+            assertSame(client.getConfig(), unchanged);
+
+            document.set("a { b = 2, c = [x, y] }, d = ${a.b}, f = added");
+            served.reload();
+            client.reload();
+
+            assertEquals(client.getConfig().getInt("a.b"), 2);
+            assertEquals(client.getConfig().getInt("d"), 2);
+            assertEquals(client.getConfig().getString("f"), "added");
+            assertFalse(client.getConfig().hasPath("e"));
+            assertEquals(client.getConfig().root(), served.getConfig().root());
+        }
+    }
+
+    @Test
+    public void testClientFallsBackWhenDaemonIsGone() throws Exception {
+        LightbendConfigurationSource served = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString("source = daemon")));
+
+        Path tokenFile = tokenFile();
+        LightbendConfigurationSource client;
+        try (LocalConfigDaemon daemon = new LocalConfigDaemon(served, 0, tokenFile)) {
+            client = clientOf(daemon, tokenFile, "source = fallback");
+            assertEquals(client.getConfig().getString("source"), "daemon");
+        }
+
+        client.reload();
+        assertEquals(client.getConfig().getString("source"), "fallback");
+        assertFalse(Files.exists(tokenFile));
+    }
+
+    @Test
+    public void testClientWithoutTheSecretIsRefused() throws Exception {
+        LightbendConfigurationSource served = new LightbendConfigurationSource(
+                new LightbendConfigFactoryHandler(() -> ConfigFactory.parseString("source = daemon")));
+
+        Path tokenFile = tokenFile();
+        Path otherTokenFile = tokenFile();
+        try (LocalConfigDaemon daemon = new LocalConfigDaemon(served, 0, tokenFile);
+             LocalConfigDaemon other = new LocalConfigDaemon(served, 0, otherTokenFile)) {
+            assertEquals(Files.getPosixFilePermissions(tokenFile),
+                    EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+            LightbendConfigurationSource client = clientOf(daemon, otherTokenFile, "source = fallback");
+            LightbendConfigurationSource otherClient = clientOf(other, otherTokenFile, "source = fallback");
+
+            assertEquals(client.getConfig().getString("source"), "fallback");
+            assertEquals(otherClient.getConfig().getString("source"), "daemon");
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTokenFileReadableByOthersIsRefused() throws Exception {
+        Path tokenFile = tokenFile();
+        Files.write(tokenFile, new byte[32]);
+        Files.setPosixFilePermissions(tokenFile, EnumSet.of(PosixFilePermission.OWNER_READ,
+                PosixFilePermission.OWNER_WRITE, PosixFilePermission.OTHERS_READ));
+
+        LocalConfigDaemon.readTokenFile(tokenFile);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testInvalidDocumentLengthIsRefused() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeInt(-1);
+
+        LocalConfigDaemon.readDocument(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), "test");
+    }
+}
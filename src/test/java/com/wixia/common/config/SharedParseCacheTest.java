@@ -0,0 +1,174 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigParseOptions;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class SharedParseCacheTest {
+
+    @Test
+    public void testComposedLoadMatchesConfigFactory() {
+        LightbendLoadStrategy strategy = new LightbendConfigFactoryHandler.ComposedLoadStrategy(
+                null, null, null, null, null, new SharedParseCache(), null);
+
+        assertEquals(strategy.load().root(), ConfigFactory.load().root());
+    }
+
+    @Test
+    public void testReferenceIsSharedBetweenClassLoaders() throws Exception {
+        SharedParseCache cache = new SharedParseCache();
+        ClassLoader parent = getClass().getClassLoader();
+
+        try (URLClassLoader module1 = new URLClassLoader(new URL[0], parent);
+             URLClassLoader module2 = new URLClassLoader(new URL[0], parent)) {
+            Config reference1 = cache.referenceUnresolved(module1);
+            long parses = cache.getParseCount();
+            Config reference2 = cache.referenceUnresolved(module2);
+
+            assertEquals(cache.getParseCount(), parses);
+            assertEquals(reference2.root(), reference1.root());
+        }
+    }
+
+    @Test
+    public void testChangedIncludeIsParsedAgain() throws Exception {
+        SharedParseCache cache = new SharedParseCache();
+        Path directory = Files.createTempDirectory("parse-cache");
+        Path main = directory.resolve("main.conf");
+        Path included = directory.resolve("included.conf");
+        try {
+            Files.write(main, Collections.singletonList(
+                    "include file(\"" + included.toString().replace("\\", "\\\\") + "\")\nown = 1"),
+                    StandardCharsets.UTF_8);
+            Files.write(included, Collections.singletonList("shared = 1"), StandardCharsets.UTF_8);
+            URL url = main.toUri().toURL();
+
+            assertEquals(cache.parseURL(url, ConfigParseOptions.defaults()).getInt("shared"), 1);
+            assertEquals(cache.parseURL(url, ConfigParseOptions.defaults()).getInt("shared"), 1);
+            assertEquals(cache.getParseCount(), 2);
+
+            Files.write(included, Collections.singletonList("shared = 2"), StandardCharsets.UTF_8);
+
+            assertEquals(cache.parseURL(url, ConfigParseOptions.defaults()).getInt("shared"), 2);
+            assertEquals(cache.getParseCount(), 4);
+        } finally {
+            Files.deleteIfExists(main);
+            Files.deleteIfExists(included);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testChangedRelativeIncludeIsParsedAgain() throws Exception {
+        SharedParseCache cache = new SharedParseCache();
+        Path directory = Files.createTempDirectory("parse-cache");
+        Path main = directory.resolve("main.conf");
+        Path included = directory.resolve("included.conf");
+        try {
+            Files.write(main, Collections.singletonList("include \"included\"\nown = 1"), StandardCharsets.UTF_8);
+            Files.write(included, Collections.singletonList("shared = 1"), StandardCharsets.UTF_8);
+            URL url = main.toUri().toURL();
+
+            assertEquals(cache.parseURL(url, ConfigParseOptions.defaults()).getInt("shared"), 1);
+            long parses = cache.getParseCount();
+            assertEquals(cache.parseURL(url, ConfigParseOptions.defaults()).getInt("shared"), 1);
+            assertEquals(cache.getParseCount(), parses);
+
+            Files.write(included, Collections.singletonList("shared = 2"), StandardCharsets.UTF_8);
+
+            assertEquals(cache.parseURL(url, ConfigParseOptions.defaults()).getInt("shared"), 2);
+        } finally {
+            Files.deleteIfExists(main);
+            Files.deleteIfExists(included);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testClasspathIncludeIsCachedPerClassLoader() throws Exception {
+        SharedParseCache cache = new SharedParseCache();
+        Path main = Files.createTempFile("parse-cache", ".conf");
+        Path directory1 = Files.createTempDirectory("parse-cache");
+        Path directory2 = Files.createTempDirectory("parse-cache");
+        try {
+            Files.write(main, Collections.singletonList("include classpath(\"module.conf\")"), StandardCharsets.UTF_8);
+            Files.write(directory1.resolve("module.conf"), Collections.singletonList("module = 1"), StandardCharsets.UTF_8);
+            Files.write(directory2.resolve("module.conf"), Collections.singletonList("module = 2"), StandardCharsets.UTF_8);
+            URL url = main.toUri().toURL();
+
+            try (URLClassLoader module1 = new URLClassLoader(new URL[]{directory1.toUri().toURL()}, null);
+                 URLClassLoader module2 = new URLClassLoader(new URL[]{directory2.toUri().toURL()}, null)) {
+                assertEquals(cache.parseURL(url, ConfigParseOptions.defaults().setClassLoader(module1)).getInt("module"), 1);
+                assertEquals(cache.parseURL(url, ConfigParseOptions.defaults().setClassLoader(module2)).getInt("module"), 2);
+                assertEquals(cache.parseURL(url, ConfigParseOptions.defaults().setClassLoader(module1)).getInt("module"), 1);
+            }
+        } finally {
+            Files.deleteIfExists(main);
+            Files.deleteIfExists(directory1.resolve("module.conf"));
+            Files.deleteIfExists(directory2.resolve("module.conf"));
+            Files.delete(directory1);
+            Files.delete(directory2);
+        }
+    }
+
+    @Test(expectedExceptions = ConfigException.IO.class)
+    public void testUnreadableDocumentIsNotMissing() throws Exception {
+        Path directory = Files.createTempDirectory("parse-cache");
+        try {
+            new SharedParseCache().parseURL(directory.toUri().toURL(), ConfigParseOptions.defaults().setAllowMissing(true));
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    @DataProvider
+    public Object[][] missingIncludes() {
+        return new Object[][]{
+                {"include \"missing-include\"", false},
+                {"include required(\"missing-include\")", true},
+                {"include required(file(\"missing-include.conf\"))", true},
+                {"include required(classpath(\"missing-include.conf\"))", true},
+                {"include classpath(\"missing-include.conf\")", false},
+        };
+    }
+
+    @Test(dataProvider = "missingIncludes")
+    public void testMissingIncludeFailsOnlyIfRequired(String include, boolean required) throws Exception {
+        Path main = Files.createTempFile("parse-cache", ".conf");
+        try {
+            Files.write(main, Collections.singletonList(include + "\na = 1"), StandardCharsets.UTF_8);
+
+            assertEquals(failsToParse(() -> ConfigFactory.parseFile(main.toFile())), required);
+            assertEquals(failsToParse(() -> new SharedParseCache().parseURL(main.toUri().toURL(),
+                    ConfigParseOptions.defaults())), required);
+        } finally {
+            Files.deleteIfExists(main);
+        }
+    }
+
+    private interface Parse {
+        Config parse() throws Exception;
+    }
+
+    private static boolean failsToParse(Parse parse) throws Exception {
+        try {
+            assertEquals(parse.parse().getInt("a"), 1);
+            return false;
+        } catch (ConfigException.IO e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.wixia.common.config;
+
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class SharedReloadSchedulerTest {
+
+    @Test
+    public void testIntervalBacksOffAndTightens() {
+        SharedReloadScheduler scheduler = new SharedReloadScheduler(
+                Duration.ofSeconds(1), Duration.ofSeconds(5), 0, 2.0);
+        try {
+            long interval = TimeUnit.SECONDS.toNanos(1);
+
+            interval = scheduler.nextInterval(interval, false);
+            assertEquals(interval, TimeUnit.SECONDS.toNanos(2));
+            interval = scheduler.nextInterval(interval, false);
+            interval = scheduler.nextInterval(interval, false);
+            assertEquals(interval, TimeUnit.SECONDS.toNanos(5));
+
+            assertEquals(scheduler.nextInterval(interval, true), TimeUnit.SECONDS.toNanos(1));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testJitterStaysWithinBounds() {
+        SharedReloadScheduler scheduler = new SharedReloadScheduler(
+                Duration.ofSeconds(1), Duration.ofSeconds(5), 0.2, 2.0);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                long delay = scheduler.withJitter(1000);
+                assertTrue(delay >= 800 && delay <= 1200, String.valueOf(delay));
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testReloadsRegisteredSources() throws InterruptedException {
+        SharedReloadScheduler scheduler = new SharedReloadScheduler(
+                Duration.ofMillis(5), Duration.ofMillis(20));
+        try {
+            CountDownLatch first = new CountDownLatch(3);
+            CountDownLatch second = new CountDownLatch(3);
+            scheduler.register(first::countDown);
+            scheduler.register(second::countDown);
+
+            assertEquals(scheduler.size(), 2);
+            assertTrue(first.await(5, TimeUnit.SECONDS));
+            assertTrue(second.await(5, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.wixia.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class SubstitutionProfilerTest {
+
+    @Test
+    public void testDepthAndFanOut() {
+        SubstitutionProfile profile = new SubstitutionProfiler().profile(ConfigFactory.parseString(
+                "a = 1\n"
+                        + "b = ${a}\n"
+                        + "c = ${b}-${a}\n"
+                        + "d { e = ${c}, f = plain }\n"
+                        + "g = ${d}\n"));
+
+        Map<String, SubstitutionProfile.PathProfile> paths = profile.getPaths().stream()
+                .collect(Collectors.toMap(SubstitutionProfile.PathProfile::getPath, path -> path));
+
+        assertEquals(paths.keySet(), new HashSet<>(Arrays.asList("b", "c", "d.e", "g")));
+        assertEquals(paths.get("b").getDepth(), 1);
+        assertEquals(paths.get("c").getDepth(), 2);
+        assertEquals(paths.get("c").getFanOut(), 2);
+        assertEquals(paths.get("d.e").getDepth(), 3);
+        assertEquals(paths.get("g").getDepth(), 4);
+        assertTrue(profile.getMostExpensiveSubtrees(10).containsKey("d"));
+    }
+
+    @Test
+    public void testProfilingFromBuilder() {
+        AtomicReference<SubstitutionProfile> profile = new AtomicReference<>();
+
+        new LightbendConfigurationSourceBuilder()
+                .withSubstitutionProfiling(profile::set)
+                .build();
+
+        assertNotNull(profile.get());
+        assertTrue(profile.get().getPaths().stream().anyMatch(path -> path.getPath().equals("pref1.compound1.url2")));
+    }
+
+    @Test
+    public void testReferenceIntoSubstitutedValueCountsTowardsDepth() {
+        SubstitutionProfile profile = new SubstitutionProfiler().profile(ConfigFactory.parseString(
+                "a { x = 1 }\n"
+                        + "b = ${a}\n"
+                        + "c = ${b.x}\n"));
+
+        Map<String, SubstitutionProfile.PathProfile> paths = profile.getPaths().stream()
+                .collect(Collectors.toMap(SubstitutionProfile.PathProfile::getPath, path -> path));
+
+        assertEquals(paths.get("c").getDepth(), 2);
+    }
+
+    @Test
+    public void testFailedProfilingDoesNotFailLoad() {
+        LightbendLoadStrategy strategy = new LightbendLoadStrategy() {
+            @Override
+            public Config load() {
+                return ConfigFactory.parseString("a = 1");
+            }
+
+            @Override
+            public Config loadUnresolved() {
+                throw new IllegalStateException("profiling failure");
+            }
+        };
+
+        Config config = new LightbendConfigFactoryHandler(strategy).withSubstitutionProfiling(profile -> {
+        }).init();
+
+        assertEquals(config.getInt("a"), 1);
+    }
+}